@@ -0,0 +1,39 @@
+package com.example.bankcards.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class AsyncTransferConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncTransferConfig.class);
+
+    /**
+     * Исполнитель асинхронных переводов: на JDK 21+ - виртуальный поток на задачу,
+     * на JDK 17 (целевая версия сборки) - пул обычных потоков. Число одновременных
+     * переводов в обоих случаях ограничивает сервис, а не исполнитель.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService asyncTransferExecutor(@Value("${app.card.transfer.async.max-concurrency:16}") int poolSize) {
+        try {
+            var executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            log.info("Асинхронные переводы выполняются на виртуальных потоках");
+            return executor;
+        } catch (ReflectiveOperationException e) {
+            log.info("Виртуальные потоки недоступны, асинхронные переводы выполняет пул из {} потоков", poolSize);
+            var counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(poolSize, r -> {
+                var thread = new Thread(r, "async-transfer-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
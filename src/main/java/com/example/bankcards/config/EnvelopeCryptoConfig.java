@@ -0,0 +1,38 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.util.DataKeyCache;
+import com.example.bankcards.util.KeyProvider;
+import com.example.bankcards.util.LocalFileKeyProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Конвертное шифрование номеров карт. Провайдер мастер-ключа по умолчанию - локальный
+ * файл; для KMS достаточно объявить свой бин {@link KeyProvider}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.card.crypto.envelope.enabled", havingValue = "true")
+public class EnvelopeCryptoConfig {
+
+    @Bean
+    @ConditionalOnMissingBean
+    public KeyProvider localFileKeyProvider(@Value("${app.card.crypto.envelope.master-key-file:./data/master.key}") Path file) {
+        return new LocalFileKeyProvider(file);
+    }
+
+    @Bean
+    public DataKeyCache dataKeyCache(KeyProvider keyProvider,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${app.card.crypto.envelope.data-key-rotation:1h}") Duration rotation,
+                                     @Value("${app.card.crypto.envelope.cache.max-size:1000}") long maxSize,
+                                     @Value("${app.card.crypto.envelope.cache.ttl:1h}") Duration ttl) {
+        return new DataKeyCache(keyProvider, meterRegistry, rotation, maxSize, ttl);
+    }
+}
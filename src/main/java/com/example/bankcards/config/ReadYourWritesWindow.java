@@ -0,0 +1,92 @@
+package com.example.bankcards.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Окно чтения своих записей: после коммита пишущей транзакции пользователя его
+ * read-only транзакции в течение window идут на основную БД, а не на реплику,
+ * которая может отставать. Пользователь - имя из SecurityContext; без него
+ * (фоновые задачи) окно по пользователю не действует.
+ * <p>
+ * Отдельно окно ведётся по владельцу изменённых карт, кто бы их ни изменил
+ * (администратор, конвейер переводов): чтения, которые заново наполняют кеши
+ * владельца ({@link #readOwner}), в течение window тоже идут на основную БД,
+ * иначе отставшая реплика вернула бы в кеш старые данные до его TTL. Пин
+ * действует, только если соединение транзакции ещё не взято, то есть чтение
+ * владельца - первый запрос в ней.
+ */
+@Component
+public class ReadYourWritesWindow {
+
+    private final boolean enabled;
+    private final Cache<String, Boolean> recentWriters;
+    private final Cache<Long, Boolean> recentOwners;
+    private final ThreadLocal<Boolean> ownerRead = new ThreadLocal<>();
+
+    public ReadYourWritesWindow(@Value("${app.datasource.replica.enabled:false}") boolean enabled,
+                                @Value("${app.datasource.replica.read-your-writes-window:2s}") Duration window,
+                                @Value("${app.datasource.replica.read-your-writes-max-users:100000}") long maxUsers) {
+        this.enabled = enabled;
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(window)
+                .build();
+        this.recentOwners = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    public void recordWrite() {
+        var user = currentUser();
+        if (user != null) {
+            recentWriters.put(user, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Открывает (или продлевает) окно по владельцу карт. Вызывается и до коммита, и после:
+     * окно должно быть открыто раньше, чем сбросятся кеши владельца.
+     */
+    public void recordOwnerWrite(long ownerId) {
+        if (enabled) {
+            recentOwners.put(ownerId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * Выполняет чтение данных владельца; если его карты менялись в пределах окна,
+     * read-only транзакция берёт соединение с основной БД.
+     */
+    public <T> T readOwner(long ownerId, Supplier<T> reader) {
+        if (!enabled || ownerRead.get() != null || recentOwners.getIfPresent(ownerId) == null) {
+            return reader.get();
+        }
+        ownerRead.set(Boolean.TRUE);
+        try {
+            return reader.get();
+        } finally {
+            ownerRead.remove();
+        }
+    }
+
+    public boolean isPinnedToPrimary() {
+        if (ownerRead.get() != null) {
+            return true;
+        }
+        var user = currentUser();
+        return user != null && recentWriters.getIfPresent(user) != null;
+    }
+
+    private static String currentUser() {
+        var auth = SecurityContextHolder.getContext().getAuthentication();
+        return auth == null ? null : auth.getName();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.bankcards.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Read-only транзакции - на реплику, всё остальное - на основную БД. Решение
+ * принимается при получении соединения, поэтому источник оборачивается в
+ * LazyConnectionDataSourceProxy: соединение берётся при первом запросе, когда
+ * признак readOnly транзакции уже выставлен.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target {
+        PRIMARY,
+        REPLICA
+    }
+
+    private final ReadYourWritesWindow readYourWrites;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReadYourWritesWindow readYourWrites) {
+        this.readYourWrites = readYourWrites;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return readYourWrites.isPinnedToPrimary() ? Target.PRIMARY : Target.REPLICA;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // пишущая транзакция: окно чтения своих записей открывается после её коммита
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    readYourWrites.recordWrite();
+                }
+            });
+        }
+        return Target.PRIMARY;
+    }
+}
@@ -1,25 +1,64 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardLookupDto;
 import com.example.bankcards.dto.CreateCardDto;
+import com.example.bankcards.dto.CursorPage;
+import com.example.bankcards.service.CardExportFormat;
+import com.example.bankcards.service.CardExportService;
 import com.example.bankcards.service.CardService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api/admin/cards")
 public class AdminCardController {
 
     private final CardService cardService;
+    private final CardExportService cardExportService;
+    private final Duration exportTimeout;
 
-    public AdminCardController(CardService cardService) {
+    public AdminCardController(CardService cardService,
+                               CardExportService cardExportService,
+                               @Value("${app.card.export.timeout:30m}") Duration exportTimeout) {
         this.cardService = cardService;
+        this.cardExportService = cardExportService;
+        this.exportTimeout = exportTimeout;
     }
 
     @GetMapping
-    public List<CardDto> getAll() {
-        return cardService.getAllCards();
+    public CursorPage<CardDto> getAll(@RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "100") int size) {
+        return cardService.getAllCards(cursor, size);
+    }
+
+    /**
+     * Потоковая выгрузка всех карт: NDJSON (по объекту на строку) или CSV.
+     * Выгрузка может идти дольше общего spring.mvc.async.request-timeout, поэтому
+     * свой тайм-аут (app.card.export.timeout) задаётся только этому запросу.
+     */
+    @GetMapping("/export")
+    public WebAsyncTask<Void> export(@RequestParam(defaultValue = "NDJSON") CardExportFormat format,
+                                     HttpServletResponse response) {
+        var contentType = format == CardExportFormat.CSV
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.parseMediaType("application/x-ndjson");
+        response.setContentType(contentType.toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=cards." + format.name().toLowerCase(Locale.ROOT));
+        return new WebAsyncTask<>(exportTimeout.toMillis(), () -> {
+            cardExportService.export(format, response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        });
     }
 
     @PostMapping
@@ -27,6 +66,14 @@ public class AdminCardController {
         return cardService.createCard(cardDto);
     }
 
+    /**
+     * Номер передаётся в теле, а не в URL, чтобы не попадать в журналы доступа.
+     */
+    @PostMapping("/lookup")
+    public CardDto lookup(@RequestBody CardLookupDto lookupDto) {
+        return cardService.findByNumber(lookupDto.number());
+    }
+
     @PatchMapping("/{id}/block")
     public CardDto block(@PathVariable Long id) {
         return cardService.blockCard(id);
@@ -37,6 +84,11 @@ public class AdminCardController {
         return cardService.activateCard(id);
     }
 
+    @PatchMapping("/{id}/balance-buckets")
+    public CardDto setBalanceBuckets(@PathVariable Long id, @RequestParam int count) {
+        return cardService.setBalanceBuckets(id, count);
+    }
+
     @DeleteMapping("/{id}/delete")
     public void delete(@PathVariable Long id) {
         cardService.deleteCard(id);
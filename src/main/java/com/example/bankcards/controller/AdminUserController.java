@@ -1,12 +1,12 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CreateUserDto;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.entity.enums.Role;
 import com.example.bankcards.service.UserService;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/admin/users")
 public class AdminUserController {
@@ -18,8 +18,10 @@ public class AdminUserController {
     }
 
     @GetMapping("/all")
-    public List<UserDto> getAllUsers() {
-        return userService.getAllUsers();
+    public CursorPage<UserDto> getAllUsers(@RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "100") int size,
+                                           @RequestParam(required = false) Role role) {
+        return userService.getUsers(cursor, size, role);
     }
 
     @GetMapping("/{id}")
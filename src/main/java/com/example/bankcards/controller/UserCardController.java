@@ -1,34 +1,118 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.AsyncTransferDto;
+import com.example.bankcards.dto.BatchTransferResultDto;
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardSummaryDto;
+import com.example.bankcards.dto.CardTransactionDto;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransferDto;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.service.AsyncTransferService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardSummaryService;
+import com.example.bankcards.service.TransferService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/users/{userId}/cards")
 public class UserCardController {
 
     private final CardService cardService;
+    private final TransferService transferService;
+    private final AsyncTransferService asyncTransferService;
+    private final CardSummaryService cardSummaryService;
 
-    public UserCardController(CardService cardService) {
+    public UserCardController(CardService cardService,
+                              TransferService transferService,
+                              AsyncTransferService asyncTransferService,
+                              CardSummaryService cardSummaryService) {
         this.cardService = cardService;
+        this.transferService = transferService;
+        this.asyncTransferService = asyncTransferService;
+        this.cardSummaryService = cardSummaryService;
     }
 
     @PostMapping("/transfer")
-    public void transfer(@PathVariable Long userId, @RequestBody TransferDto dto) {
-        cardService.transfer(userId, dto);
+    public ResponseEntity<String> transfer(@PathVariable Long userId,
+                                           @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                                           @RequestBody TransferDto dto) {
+        var outcome = transferService.transfer(userId, idempotencyKey, dto);
+        var response = ResponseEntity.status(outcome.status());
+        if (outcome.replayed()) {
+            response.header("Idempotent-Replayed", "true");
+        }
+        return response.body(outcome.body());
+    }
+
+    @PostMapping("/transfers")
+    public ResponseEntity<AsyncTransferDto> submitTransfer(@PathVariable Long userId, @RequestBody TransferDto dto) {
+        var transfer = asyncTransferService.submit(userId, dto);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/users/" + userId + "/cards/transfers/" + transfer.id()))
+                .body(transfer);
+    }
+
+    @GetMapping("/transfers/{transferId}")
+    public AsyncTransferDto getTransfer(@PathVariable Long userId, @PathVariable UUID transferId) {
+        return asyncTransferService.get(userId, transferId);
     }
 
+    @PostMapping("/transfers/batch")
+    public BatchTransferResultDto transferBatch(@PathVariable Long userId, @RequestBody List<TransferDto> transfers) {
+        return cardService.transferBatch(userId, transfers);
+    }
+
+    @GetMapping("/{cardId}/transactions")
+    public CursorPage<CardTransactionDto> getCardTransactions(
+            @PathVariable Long userId,
+            @PathVariable Long cardId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return cardService.getCardTransactions(userId, cardId, cursor, size);
+    }
+
+    /**
+     * Слабый ETag - версия карт владельца. При совпадении If-None-Match ответ 304
+     * без чтения карт. Версия берётся до страницы: страница может оказаться новее
+     * метки (тогда следующий запрос просто получит 200), но не старше.
+     */
     @GetMapping
-    public Page<CardDto> getUserCards(
+    public ResponseEntity<Page<CardDto>> getUserCards(
             @PathVariable Long userId,
             @RequestParam(required = false) CardStatus status,
             @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "20") int size,
+            WebRequest request) {
+        String etag = "W/\"" + cardService.getUserCardsVersion(userId) + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok(cardService.getUserCards(userId, status, PageRequest.of(page, size)));
+    }
+
+    @GetMapping("/summary")
+    public List<CardSummaryDto> getSummary(@PathVariable Long userId) {
+        return cardSummaryService.getSummary(userId);
+    }
+
+    /**
+     * То же без COUNT и OFFSET: страницы по курсору, nextCursor = null на последней.
+     */
+    @GetMapping("/slice")
+    public CursorPage<CardDto> getUserCardsSlice(
+            @PathVariable Long userId,
+            @RequestParam(required = false) CardStatus status,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "20") int size) {
-        return cardService.getUserCards(userId, status, PageRequest.of(page, size));
+        return cardService.getUserCardsSlice(userId, status, cursor, size);
     }
 }
@@ -0,0 +1,12 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.enums.AsyncTransferStatus;
+
+import java.util.UUID;
+
+/**
+ * Состояние асинхронного перевода. Для FAILED errorStatus и error совпадают
+ * с кодом и телом ответа синхронного POST /transfer на ту же ошибку.
+ */
+public record AsyncTransferDto(UUID id, AsyncTransferStatus status, Integer errorStatus, String error) {
+}
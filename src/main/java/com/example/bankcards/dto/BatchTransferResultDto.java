@@ -0,0 +1,4 @@
+package com.example.bankcards.dto;
+
+public record BatchTransferResultDto(int transfers, int updatedCards) {
+}
@@ -1,8 +1,7 @@
 package com.example.bankcards.dto;
 
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.util.Money;
 
-import java.math.BigDecimal;
-
-public record CardDto(long id, long ownerId, String number, CardStatus status, BigDecimal balance) {
+public record CardDto(long id, long ownerId, String number, CardStatus status, Money balance) {
 }
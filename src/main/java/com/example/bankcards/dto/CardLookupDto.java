@@ -0,0 +1,4 @@
+package com.example.bankcards.dto;
+
+public record CardLookupDto(String number) {
+}
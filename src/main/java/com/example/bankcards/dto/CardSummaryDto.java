@@ -0,0 +1,7 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.util.Money;
+
+public record CardSummaryDto(CardStatus status, long count, Money total) {
+}
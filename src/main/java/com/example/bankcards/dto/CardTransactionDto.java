@@ -0,0 +1,14 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.enums.CardTransactionType;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+public record CardTransactionDto(long id,
+                                 long cardId,
+                                 long counterpartyCardId,
+                                 CardTransactionType type,
+                                 BigDecimal amount,
+                                 Instant createdAt) {
+}
@@ -0,0 +1,28 @@
+package com.example.bankcards.dto;
+
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.util.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Строка карты для списков, читается JPQL-проекцией без загрузки сущности Card.
+ * Номер - в том виде, в каком хранится: last4 и шифротекст (двоичный или текстовый).
+ * Баланс - полный, вместе с корзинами.
+ */
+public record CardView(long id,
+                       long ownerId,
+                       CardStatus status,
+                       Money balance,
+                       String cardLast4,
+                       byte[] cardNumberEnc,
+                       String cardNumber) {
+
+    /**
+     * Для проекции: основной баланс и сумма корзин приходят отдельными столбцами одного запроса.
+     */
+    public CardView(long id, long ownerId, CardStatus status, Money balance, BigDecimal bucketsBalance,
+                    String cardLast4, byte[] cardNumberEnc, String cardNumber) {
+        this(id, ownerId, status, balance.plus(Money.of(bucketsBalance)), cardLast4, cardNumberEnc, cardNumber);
+    }
+}
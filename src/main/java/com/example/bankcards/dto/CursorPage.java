@@ -0,0 +1,10 @@
+package com.example.bankcards.dto;
+
+import java.util.List;
+
+/**
+ * Страница keyset-выборки. {@code nextCursor} передаётся в следующий запрос как есть;
+ * {@code null} означает, что дальше записей нет.
+ */
+public record CursorPage<T>(List<T> content, String nextCursor) {
+}
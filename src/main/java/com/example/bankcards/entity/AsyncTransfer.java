@@ -0,0 +1,102 @@
+package com.example.bankcards.entity;
+
+import com.example.bankcards.entity.enums.AsyncTransferStatus;
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Перевод, принятый на асинхронное выполнение. Статус DONE ставится в той же
+ * транзакции, что и сам перевод, поэтому PENDING гарантирует, что деньги не двигались.
+ */
+@Entity
+@Table(name = "async_transfers")
+public class AsyncTransfer {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "from_card_id", nullable = false)
+    private Long fromCardId;
+
+    @Column(name = "to_card_id", nullable = false)
+    private Long toCardId;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private AsyncTransferStatus status;
+
+    @Column(name = "error_status")
+    private Integer errorStatus;
+
+    @Column(name = "error_message")
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    protected AsyncTransfer() {
+    }
+
+    public AsyncTransfer(Long userId, Long fromCardId, Long toCardId, BigDecimal amount, Instant createdAt) {
+        this.userId = userId;
+        this.fromCardId = fromCardId;
+        this.toCardId = toCardId;
+        this.amount = amount;
+        this.status = AsyncTransferStatus.PENDING;
+        this.createdAt = createdAt;
+        this.updatedAt = createdAt;
+    }
+
+    public UUID getId() {
+        return id;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getFromCardId() {
+        return fromCardId;
+    }
+
+    public Long getToCardId() {
+        return toCardId;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public AsyncTransferStatus getStatus() {
+        return status;
+    }
+
+    public Integer getErrorStatus() {
+        return errorStatus;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+}
@@ -1,9 +1,9 @@
 package com.example.bankcards.entity;
 
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.util.Money;
 import jakarta.persistence.*;
 
-import java.math.BigDecimal;
 import java.time.LocalDate;
 
 @Entity
@@ -14,9 +14,38 @@ public class Card {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @Column(name = "card_number", nullable = false)
+    /**
+     * Прежний текстовый формат "base64(iv):base64(ct)"; у переведённых строк пуст.
+     * Колонки номера сущность пишет только при вставке, дальше их меняют отдельные
+     * UPDATE миграции и перешифрования: иначе сохранение карты, прочитанной до
+     * них, вернуло бы прежнее значение.
+     */
+    @Column(name = "card_number", updatable = false)
     private String cardNumber;
 
+    /**
+     * Номер в двоичном формате CardCrypto. Новые карты пишутся только сюда,
+     * старые переводит CardNumberBinaryMigration.
+     */
+    @Column(name = "card_number_enc", updatable = false)
+    private byte[] cardNumberEnc;
+
+    /**
+     * Последние четыре цифры номера: списки и смена статуса строят маску по ним,
+     * не расшифровывая card_number. У старых строк заполняется CardNumberBackfill.
+     * Сущность пишет колонку только при вставке: иначе сохранение карты, прочитанной
+     * до дозаполнения, вернуло бы в неё null.
+     */
+    @Column(name = "card_last4", length = 4, updatable = false)
+    private String cardLast4;
+
+    /**
+     * Слепой индекс номера ({@link com.example.bankcards.util.CardBlindIndex}), уникален.
+     * Как и card_last4, после вставки меняется только отдельным UPDATE.
+     */
+    @Column(name = "card_number_hmac", length = 64, updatable = false)
+    private String cardNumberHmac;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", nullable = false)
     private User owner;
@@ -28,7 +57,18 @@ public class Card {
     private CardStatus status;
 
     @Column
-    private BigDecimal balance;
+    @Convert(converter = MoneyConverter.class)
+    private Money balance;
+
+    /**
+     * Число корзин в card_balance_buckets, 0 - баланс целиком в balance.
+     */
+    @Column(name = "balance_buckets", nullable = false)
+    private int balanceBuckets;
+
+    @Version
+    @Column(nullable = false)
+    private long version;
 
     public Long getId() {
         return id;
@@ -46,6 +86,30 @@ public class Card {
         this.cardNumber = cardNumber;
     }
 
+    public byte[] getCardNumberEnc() {
+        return cardNumberEnc;
+    }
+
+    public void setCardNumberEnc(byte[] cardNumberEnc) {
+        this.cardNumberEnc = cardNumberEnc;
+    }
+
+    public String getCardLast4() {
+        return cardLast4;
+    }
+
+    public void setCardLast4(String cardLast4) {
+        this.cardLast4 = cardLast4;
+    }
+
+    public String getCardNumberHmac() {
+        return cardNumberHmac;
+    }
+
+    public void setCardNumberHmac(String cardNumberHmac) {
+        this.cardNumberHmac = cardNumberHmac;
+    }
+
     public User getOwner() {
         return owner;
     }
@@ -70,11 +134,23 @@ public class Card {
         this.status = status;
     }
 
-    public BigDecimal getBalance() {
+    public Money getBalance() {
         return balance;
     }
 
-    public void setBalance(BigDecimal balance) {
+    public void setBalance(Money balance) {
         this.balance = balance;
     }
+
+    public int getBalanceBuckets() {
+        return balanceBuckets;
+    }
+
+    public void setBalanceBuckets(int balanceBuckets) {
+        this.balanceBuckets = balanceBuckets;
+    }
+
+    public long getVersion() {
+        return version;
+    }
 }
@@ -0,0 +1,67 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Часть баланса «горячей» карты. Зачисления на такую карту расходятся по корзинам,
+ * и параллельные переводы обновляют разные строки вместо одной строки cards.
+ * Полный баланс карты - cards.balance плюс сумма её корзин.
+ */
+@Entity
+@Table(name = "card_balance_buckets")
+@IdClass(CardBalanceBucket.PrimaryKey.class)
+public class CardBalanceBucket {
+
+    @Id
+    @Column(name = "card_id")
+    private Long cardId;
+
+    @Id
+    @Column(name = "bucket")
+    private int bucket;
+
+    @Column(nullable = false)
+    private BigDecimal balance;
+
+    public Long getCardId() {
+        return cardId;
+    }
+
+    public int getBucket() {
+        return bucket;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public static class PrimaryKey implements Serializable {
+
+        private Long cardId;
+        private int bucket;
+
+        protected PrimaryKey() {
+        }
+
+        public PrimaryKey(Long cardId, int bucket) {
+            this.cardId = cardId;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PrimaryKey id)) return false;
+            return bucket == id.bucket && Objects.equals(cardId, id.cardId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(cardId, bucket);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.bankcards.entity;
+
+import com.example.bankcards.entity.enums.CardTransactionType;
+import jakarta.persistence.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Запись журнала движения средств по карте. Записи только добавляются.
+ * Id берётся из последовательности с шагом 50, а не IDENTITY, чтобы Hibernate
+ * мог отправлять вставки JDBC-пакетом без лишнего обращения к БД на каждую строку.
+ */
+@Entity
+@Table(name = "card_transactions")
+public class CardTransaction {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "card_transactions_seq")
+    @SequenceGenerator(name = "card_transactions_seq", sequenceName = "card_transactions_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "card_id", nullable = false)
+    private Long cardId;
+
+    @Column(name = "counterparty_card_id", nullable = false)
+    private Long counterpartyCardId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private CardTransactionType type;
+
+    @Column(nullable = false)
+    private BigDecimal amount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    protected CardTransaction() {
+    }
+
+    public CardTransaction(Long cardId, Long counterpartyCardId, CardTransactionType type,
+                           BigDecimal amount, Instant createdAt) {
+        this.cardId = cardId;
+        this.counterpartyCardId = counterpartyCardId;
+        this.type = type;
+        this.amount = amount;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getCardId() {
+        return cardId;
+    }
+
+    public Long getCounterpartyCardId() {
+        return counterpartyCardId;
+    }
+
+    public CardTransactionType getType() {
+        return type;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
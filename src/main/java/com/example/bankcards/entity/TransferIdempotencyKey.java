@@ -0,0 +1,83 @@
+package com.example.bankcards.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+@Entity
+@Table(name = "transfer_idempotency_keys")
+@IdClass(TransferIdempotencyKey.PrimaryKey.class)
+public class TransferIdempotencyKey {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Id
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    @Column(name = "request_hash", nullable = false)
+    private String requestHash;
+
+    @Column(nullable = false)
+    private int status;
+
+    @Column(name = "response_body")
+    private String responseBody;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public static class PrimaryKey implements Serializable {
+
+        private Long userId;
+        private String idempotencyKey;
+
+        protected PrimaryKey() {
+        }
+
+        public PrimaryKey(Long userId, String idempotencyKey) {
+            this.userId = userId;
+            this.idempotencyKey = idempotencyKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PrimaryKey id)) return false;
+            return Objects.equals(userId, id.userId) && Objects.equals(idempotencyKey, id.idempotencyKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(userId, idempotencyKey);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class CardAlreadyExistsException extends RuntimeException {
+    public CardAlreadyExistsException(String message) {
+        super(message);
+    }
+}
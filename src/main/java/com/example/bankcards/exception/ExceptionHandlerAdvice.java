@@ -1,13 +1,43 @@
 package com.example.bankcards.exception;
 
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.method.annotation.ExceptionHandlerMethodResolver;
 
 @ControllerAdvice
 public class ExceptionHandlerAdvice {
 
+    public static final String OPTIMISTIC_CONFLICT_MESSAGE = "Карта изменена параллельным запросом, повторите операцию";
+
+    private static final ExceptionHandlerMethodResolver HANDLERS =
+            new ExceptionHandlerMethodResolver(ExceptionHandlerAdvice.class);
+    private static final ExceptionHandlerAdvice INSTANCE = new ExceptionHandlerAdvice();
+
+    /**
+     * Код ответа для бизнес-исключения или {@code null}, если исключение не из их числа.
+     * Нужен там, где результат запроса сохраняется до того, как исключение дойдёт до MVC.
+     * Код берётся из ответа того обработчика ниже, который выбрал бы MVC (с учётом
+     * наследования), так что список исключений и их коды ведутся в одном месте.
+     */
+    public static HttpStatus statusOf(Throwable ex) {
+        if (ex instanceof OptimisticLockingFailureException) {
+            return null;
+        }
+        var handler = HANDLERS.resolveMethodByExceptionType(ex.getClass());
+        if (handler == null) {
+            return null;
+        }
+        try {
+            var response = (ResponseEntity<?>) handler.invoke(INSTANCE, ex);
+            return HttpStatus.valueOf(response.getStatusCode().value());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Обработчик " + handler.getName() + " недоступен", e);
+        }
+    }
+
     @ExceptionHandler(InvalidUserDataException.class)
     public ResponseEntity<String> handleInvalidUserDataException(InvalidUserDataException ex) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
@@ -40,4 +70,33 @@ public class ExceptionHandlerAdvice {
     public ResponseEntity<String> handleInvalidTransferException(InvalidTransferException ex) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
+    @ExceptionHandler(IdempotencyKeyReuseException.class)
+    public ResponseEntity<String> handleIdempotencyKeyReuseException(IdempotencyKeyReuseException ex) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(ex.getMessage());
+    }
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursorException(InvalidCursorException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+    @ExceptionHandler(TransferNotFoundException.class)
+    public ResponseEntity<String> handleTransferNotFoundException(TransferNotFoundException ex) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ex.getMessage());
+    }
+    @ExceptionHandler(InvalidCardDataException.class)
+    public ResponseEntity<String> handleInvalidCardDataException(InvalidCardDataException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+    @ExceptionHandler(CardAlreadyExistsException.class)
+    public ResponseEntity<String> handleCardAlreadyExistsException(CardAlreadyExistsException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    /**
+     * Конфликт версий, не разрешившийся повторами. Не входит в {@link #statusOf}: это
+     * временный сбой, его нельзя сохранять как результат запроса.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<String> handleOptimisticLockingFailure(OptimisticLockingFailureException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(OPTIMISTIC_CONFLICT_MESSAGE);
+    }
 }
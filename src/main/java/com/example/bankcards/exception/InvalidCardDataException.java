@@ -0,0 +1,7 @@
+package com.example.bankcards.exception;
+
+public class InvalidCardDataException extends RuntimeException {
+    public InvalidCardDataException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.AsyncTransfer;
+import com.example.bankcards.entity.enums.AsyncTransferStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+
+public interface AsyncTransferRepository extends JpaRepository<AsyncTransfer, UUID> {
+
+    /**
+     * Захват перевода на выполнение: 0 строк - его уже выполнил или отклонил другой
+     * исполнитель. Вызывать в транзакции перевода, до списания.
+     */
+    @Modifying
+    @Query("update AsyncTransfer t set t.status = com.example.bankcards.entity.enums.AsyncTransferStatus.DONE, " +
+            "t.updatedAt = :now where t.id = :id " +
+            "and t.status = com.example.bankcards.entity.enums.AsyncTransferStatus.PENDING")
+    int markDone(@Param("id") UUID id, @Param("now") Instant now);
+
+    @Modifying
+    @Query("update AsyncTransfer t set t.status = com.example.bankcards.entity.enums.AsyncTransferStatus.FAILED, " +
+            "t.errorStatus = :errorStatus, t.errorMessage = :errorMessage, t.updatedAt = :now where t.id = :id " +
+            "and t.status = com.example.bankcards.entity.enums.AsyncTransferStatus.PENDING")
+    int markFailed(@Param("id") UUID id,
+                   @Param("errorStatus") int errorStatus,
+                   @Param("errorMessage") String errorMessage,
+                   @Param("now") Instant now);
+
+    List<AsyncTransfer> findByStatusOrderByCreatedAt(AsyncTransferStatus status, Limit limit);
+}
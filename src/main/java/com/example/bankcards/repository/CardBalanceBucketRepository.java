@@ -0,0 +1,39 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.CardBalanceBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+
+
+public interface CardBalanceBucketRepository
+        extends JpaRepository<CardBalanceBucket, CardBalanceBucket.PrimaryKey> {
+
+    @Modifying
+    @Query(value = "insert into card_balance_buckets (card_id, bucket, balance) " +
+            "select :cardId, g, 0 from generate_series(0, :count - 1) g", nativeQuery = true)
+    int create(@Param("cardId") Long cardId, @Param("count") int count);
+
+    @Modifying
+    @Query("update CardBalanceBucket b set b.balance = b.balance + :amount " +
+            "where b.cardId = :cardId and b.bucket = :bucket")
+    int credit(@Param("cardId") Long cardId, @Param("bucket") int bucket, @Param("amount") BigDecimal amount);
+
+    @Query("select coalesce(sum(b.balance), 0) from CardBalanceBucket b where b.cardId = :cardId")
+    BigDecimal sumByCardId(@Param("cardId") Long cardId);
+
+    /**
+     * Обнуляет корзины после того, как их сумма перенесена в cards.balance.
+     * Вызывать только под монопольной блокировкой строки карты.
+     */
+    @Modifying
+    @Query("update CardBalanceBucket b set b.balance = 0 where b.cardId = :cardId and b.balance <> 0")
+    int reset(@Param("cardId") Long cardId);
+
+    @Modifying
+    @Query("delete from CardBalanceBucket b where b.cardId = :cardId")
+    int deleteByCardId(@Param("cardId") Long cardId);
+}
@@ -1,14 +1,190 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.CardView;
 import com.example.bankcards.entity.Card;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.util.Money;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 
 public interface CardRepository extends JpaRepository<Card, Long> {
 
     Page<Card> findByOwnerId(Long ownerId, Pageable pageable);
     Page<Card> findByOwnerIdAndStatus(Long ownerId, CardStatus status, Pageable pageable);
+
+    /**
+     * Сумма корзин читается тем же запросом, что и cards.balance: отдельный запрос
+     * при READ COMMITTED мог бы увидеть корзины уже слитыми в баланс, который прочитан до слияния.
+     */
+    String CARD_VIEW = "select new com.example.bankcards.dto.CardView(c.id, c.owner.id, c.status, c.balance, " +
+            "(select coalesce(sum(b.balance), 0) from CardBalanceBucket b " +
+            "where b.cardId = c.id and c.balanceBuckets > 0), " +
+            "c.cardLast4, c.cardNumberEnc, c.cardNumber) from Card c ";
+
+    /**
+     * Карты владельца сразу в {@link CardView}: без сущностей, снимков для dirty checking
+     * и прокси владельца.
+     */
+    @Query(value = CARD_VIEW + "where c.owner.id = :ownerId",
+            countQuery = "select count(c) from Card c where c.owner.id = :ownerId")
+    Page<CardView> findViewsByOwnerId(@Param("ownerId") Long ownerId, Pageable pageable);
+
+    @Query(value = CARD_VIEW + "where c.owner.id = :ownerId and c.status = :status",
+            countQuery = "select count(c) from Card c where c.owner.id = :ownerId and c.status = :status")
+    Page<CardView> findViewsByOwnerIdAndStatus(@Param("ownerId") Long ownerId,
+                                               @Param("status") CardStatus status,
+                                               Pageable pageable);
+
+    /**
+     * SELECT ... FOR UPDATE по одной карте. При блокировке нескольких карт
+     * вызывать в порядке возрастания id, иначе встречные переводы могут
+     * взаимно заблокироваться.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * SELECT ... FOR SHARE: параллельные зачисления на расщеплённую карту не ждут
+     * друг друга, а блокировка, смена статуса и списание ждут их завершения.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("select c from Card c where c.id = :id")
+    Optional<Card> findByIdForShare(@Param("id") Long id);
+
+    @Query("select c.id from Card c where c.id in :ids and c.balanceBuckets > 0")
+    List<Long> findStripedIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Keyset-варианты для списка карт владельца: без COUNT и OFFSET, по индексам
+     * ix_cards_owner_id (owner_id, id) и ix_cards_owner_status_id (owner_id, status, id).
+     */
+    @Query(CARD_VIEW + "where c.owner.id = :ownerId and c.id > :afterId order by c.id")
+    List<CardView> findViewsByOwnerIdAfter(@Param("ownerId") Long ownerId,
+                                           @Param("afterId") long afterId,
+                                           Limit limit);
+
+    @Query(CARD_VIEW + "where c.owner.id = :ownerId and c.status = :status and c.id > :afterId order by c.id")
+    List<CardView> findViewsByOwnerIdAndStatusAfter(@Param("ownerId") Long ownerId,
+                                                    @Param("status") CardStatus status,
+                                                    @Param("afterId") long afterId,
+                                                    Limit limit);
+
+    @Query(CARD_VIEW + "where c.id > :afterId order by c.id")
+    List<CardView> findViewsAfter(@Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Число карт и сумма балансов владельца по статусам; для карт с корзинами
+     * к балансу прибавляется сумма корзин.
+     */
+    @Query(value = """
+            select c.status as status, count(*) as cards, coalesce(sum(c.balance + coalesce(b.total, 0)), 0) as total
+            from cards c
+            left join lateral (
+                select sum(cb.balance) as total from card_balance_buckets cb
+                where cb.card_id = c.id and c.balance_buckets > 0
+            ) b on true
+            where c.owner_id = :ownerId
+            group by c.status
+            order by c.status""", nativeQuery = true)
+    List<StatusTotal> summarizeByOwnerId(@Param("ownerId") Long ownerId);
+
+    interface StatusTotal {
+        String getStatus();
+        long getCards();
+        BigDecimal getTotal();
+    }
+
+    /**
+     * Полный баланс карты одним запросом, по той же причине, что и в {@link #CARD_VIEW}.
+     */
+    @Query(value = """
+            select c.balance + coalesce((
+                select sum(cb.balance) from card_balance_buckets cb
+                where cb.card_id = c.id and c.balance_buckets > 0), 0)
+            from cards c
+            where c.id = :id""", nativeQuery = true)
+    Optional<BigDecimal> findTotalBalanceById(@Param("id") Long id);
+
+    Optional<Card> findByCardNumberHmac(String cardNumberHmac);
+
+    boolean existsByCardNumberHmac(String cardNumberHmac);
+
+    /**
+     * Очередная порция карт без card_last4 или слепого индекса по возрастанию id, для дозаполнения.
+     */
+    @Query("select c from Card c where (c.cardLast4 is null or c.cardNumberHmac is null) " +
+            "and c.id > :afterId order by c.id")
+    List<Card> findNotBackfilled(@Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Заполняет пустые производные колонки номера. Версия не увеличивается: сущность
+     * эти колонки после вставки не пишет, поэтому сохранение карты, прочитанной до
+     * дозаполнения, их не затрёт, а конфликт версий для переводов и смены статуса
+     * был бы ложным.
+     */
+    @Modifying
+    @Query("update Card c set c.cardLast4 = coalesce(c.cardLast4, :last4), " +
+            "c.cardNumberHmac = coalesce(c.cardNumberHmac, :hmac) where c.id = :id")
+    int backfillNumberColumns(@Param("id") Long id, @Param("last4") String last4, @Param("hmac") String hmac);
+
+    /**
+     * Очередная порция карт с номером в текстовом формате по возрастанию id.
+     */
+    @Query("select c from Card c where c.cardNumber is not null and c.id > :afterId order by c.id")
+    List<Card> findWithTextNumber(@Param("afterId") long afterId, Limit limit);
+
+    /**
+     * Переносит номер в двоичный столбец, если текстовый не изменился с момента чтения.
+     * Версия не увеличивается: сущность колонки номера после вставки не пишет, так что
+     * карта, прочитанная до переноса, его не откатит.
+     */
+    @Modifying
+    @Query("update Card c set c.cardNumberEnc = :binary, c.cardNumber = null " +
+            "where c.id = :id and c.cardNumber = :text")
+    int moveNumberToBinary(@Param("id") Long id, @Param("text") String text, @Param("binary") byte[] binary);
+
+    @Query("select c.owner.id from Card c where c.id = :id")
+    Optional<Long> findOwnerIdById(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Card c where c.id in :ids order by c.id")
+    List<Card> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Списание одним UPDATE: 0 изменённых строк означает, что карта не найдена,
+     * чужая, неактивна или на ней недостаточно средств. Версия увеличивается,
+     * чтобы оптимистичные переводы, прочитавшие карту раньше, не затёрли баланс.
+     */
+    @Modifying
+    @Query("update Card c set c.balance = c.balance - :amount, c.version = c.version + 1 " +
+            "where c.id = :id and c.owner.id = :ownerId " +
+            "and c.status = com.example.bankcards.entity.enums.CardStatus.ACTIVE " +
+            "and c.balance >= :amount")
+    int debit(@Param("id") Long id, @Param("ownerId") Long ownerId, @Param("amount") Money amount);
+
+    /**
+     * Зачисление одним UPDATE: 0 изменённых строк - карта не найдена, чужая, неактивна
+     * или баланс превысил бы maxBalance.
+     */
+    @Modifying
+    @Query("update Card c set c.balance = c.balance + :amount, c.version = c.version + 1 " +
+            "where c.id = :id and c.owner.id = :ownerId " +
+            "and c.status = com.example.bankcards.entity.enums.CardStatus.ACTIVE " +
+            "and c.balance <= :maxBalance - :amount")
+    int credit(@Param("id") Long id, @Param("ownerId") Long ownerId, @Param("amount") Money amount,
+               @Param("maxBalance") Money maxBalance);
 }
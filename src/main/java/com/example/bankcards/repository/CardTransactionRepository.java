@@ -0,0 +1,35 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.dto.CardTransactionDto;
+import com.example.bankcards.entity.CardTransaction;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+
+
+public interface CardTransactionRepository extends JpaRepository<CardTransaction, Long> {
+
+    @Query("select new com.example.bankcards.dto.CardTransactionDto(" +
+            "t.id, t.cardId, t.counterpartyCardId, t.type, t.amount, t.createdAt) " +
+            "from CardTransaction t where t.cardId = :cardId " +
+            "order by t.createdAt desc, t.id desc")
+    List<CardTransactionDto> findLatest(@Param("cardId") Long cardId, Limit limit);
+
+    /**
+     * Следующая страница после курсора (createdAt, id): условие по кортежу идёт
+     * по индексу (card_id, created_at, id) без OFFSET.
+     */
+    @Query("select new com.example.bankcards.dto.CardTransactionDto(" +
+            "t.id, t.cardId, t.counterpartyCardId, t.type, t.amount, t.createdAt) " +
+            "from CardTransaction t where t.cardId = :cardId " +
+            "and (t.createdAt, t.id) < (:createdAt, :id) " +
+            "order by t.createdAt desc, t.id desc")
+    List<CardTransactionDto> findBefore(@Param("cardId") Long cardId,
+                                        @Param("createdAt") Instant createdAt,
+                                        @Param("id") Long id,
+                                        Limit limit);
+}
@@ -0,0 +1,34 @@
+package com.example.bankcards.repository;
+
+import com.example.bankcards.entity.TransferIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+
+
+public interface TransferIdempotencyKeyRepository
+        extends JpaRepository<TransferIdempotencyKey, TransferIdempotencyKey.PrimaryKey> {
+
+    /**
+     * Занимает ключ. Возвращает 0, если ключ уже занят: при конкурентной вставке того же
+     * ключа PostgreSQL дожидается завершения чужой транзакции, а не падает с ошибкой.
+     */
+    @Modifying
+    @Query(value = "insert into transfer_idempotency_keys " +
+            "(user_id, idempotency_key, request_hash, status, response_body, created_at) " +
+            "values (:userId, :key, :requestHash, :status, :body, :createdAt) " +
+            "on conflict do nothing", nativeQuery = true)
+    int reserve(@Param("userId") Long userId,
+                @Param("key") String key,
+                @Param("requestHash") String requestHash,
+                @Param("status") int status,
+                @Param("body") String body,
+                @Param("createdAt") Instant createdAt);
+
+    @Modifying
+    @Query("delete from TransferIdempotencyKey k where k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Instant before);
+}
@@ -1,8 +1,14 @@
 package com.example.bankcards.repository;
 
+import com.example.bankcards.dto.UserDto;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.Role;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 
@@ -11,4 +17,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     Optional<User> findByUsername(String username);
 
+    /**
+     * Страница пользователей после afterId по возрастанию id, сразу в DTO: сущности
+     * (и их коллекция cards) не загружаются. Фильтр по роли - отдельным запросом, а не
+     * (:role is null or ...): иначе общий план PostgreSQL не берёт ix_users_role_id (role, id).
+     */
+    @Query("""
+            select new com.example.bankcards.dto.UserDto(u.id, u.username, u.role)
+            from User u
+            where u.id > :afterId
+            order by u.id""")
+    List<UserDto> findPageAfter(@Param("afterId") long afterId, Limit limit);
+
+    @Query("""
+            select new com.example.bankcards.dto.UserDto(u.id, u.username, u.role)
+            from User u
+            where u.role = :role and u.id > :afterId
+            order by u.id""")
+    List<UserDto> findPageByRoleAfter(@Param("role") Role role, @Param("afterId") long afterId, Limit limit);
+
 }
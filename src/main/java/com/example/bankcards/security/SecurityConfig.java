@@ -33,7 +33,7 @@ public class SecurityConfig {
                                 "/api-docs/**",
                                 "/swagger/**"
                         ).permitAll()
-                        .requestMatchers("/api/admin/**").hasRole("ADMIN")
+                        .requestMatchers("/api/admin/**", "/actuator/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
                 .httpBasic(b -> b.disable())
@@ -0,0 +1,16 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.AsyncTransferDto;
+import com.example.bankcards.dto.TransferDto;
+
+import java.util.UUID;
+
+public interface AsyncTransferService {
+
+    /**
+     * Сохраняет перевод в статусе PENDING и отдаёт его на выполнение, не дожидаясь результата.
+     */
+    AsyncTransferDto submit(Long userId, TransferDto dto);
+
+    AsyncTransferDto get(Long userId, UUID transferId);
+}
@@ -0,0 +1,6 @@
+package com.example.bankcards.service;
+
+public enum CardExportFormat {
+    NDJSON,
+    CSV
+}
@@ -0,0 +1,12 @@
+package com.example.bankcards.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface CardExportService {
+
+    /**
+     * Пишет все карты в out порциями, не держа выгрузку целиком в памяти.
+     */
+    void export(CardExportFormat format, OutputStream out) throws IOException;
+}
@@ -1,7 +1,10 @@
 package com.example.bankcards.service;
 
+import com.example.bankcards.dto.BatchTransferResultDto;
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardTransactionDto;
 import com.example.bankcards.dto.CreateCardDto;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransferDto;
 import com.example.bankcards.entity.enums.CardStatus;
 import org.springframework.data.domain.Page;
@@ -11,12 +14,40 @@ import java.util.List;
 
 public interface CardService {
 
-    List<CardDto> getAllCards();
+    /**
+     * Все карты по возрастанию id, keyset-страницами.
+     */
+    CursorPage<CardDto> getAllCards(String cursor, int size);
     CardDto createCard(CreateCardDto cardDto);
+
+    /**
+     * Поиск карты по полному номеру через слепой индекс, без расшифровки таблицы.
+     */
+    CardDto findByNumber(String number);
     CardDto blockCard(Long cardId);
     CardDto activateCard(Long cardId);
     void deleteCard(Long cardId);
     CardDto requestBlock(Long userId, Long cardId);
+    CardDto setBalanceBuckets(Long cardId, int buckets);
     void transfer(Long userId, TransferDto dto);
+    BatchTransferResultDto transferBatch(Long userId, List<TransferDto> transfers);
+
+    /**
+     * Выполняет независимые переводы одной транзакцией. Отказ одного перевода не откатывает
+     * остальные: на его месте в результате стоит исключение, у прошедших - null.
+     */
+    List<RuntimeException> transferGroup(List<GroupTransfer> transfers);
     Page<CardDto> getUserCards(Long ownerId, CardStatus status, Pageable pageable);
+
+    /**
+     * Версия карт владельца для условных запросов: меняется после коммита любого
+     * изменения его карт, включая переводы. Без запроса в БД.
+     */
+    String getUserCardsVersion(Long ownerId);
+
+    /**
+     * Карты владельца по возрастанию id, keyset-страницами: без COUNT и OFFSET.
+     */
+    CursorPage<CardDto> getUserCardsSlice(Long ownerId, CardStatus status, String cursor, int size);
+    CursorPage<CardTransactionDto> getCardTransactions(Long userId, Long cardId, String cursor, int size);
 }
@@ -0,0 +1,13 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.CardSummaryDto;
+
+import java.util.List;
+
+public interface CardSummaryService {
+
+    /**
+     * Число карт и сумма балансов владельца по статусам, одним агрегатным запросом.
+     */
+    List<CardSummaryDto> getSummary(Long ownerId);
+}
@@ -0,0 +1,8 @@
+package com.example.bankcards.service;
+
+/**
+ * Набор карт владельца или их статусы изменились. Публикуется внутри транзакции,
+ * слушатели с @TransactionalEventListener получают его после коммита.
+ */
+public record CardsChangedEvent(long ownerId) {
+}
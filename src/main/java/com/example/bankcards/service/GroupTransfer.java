@@ -0,0 +1,9 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferDto;
+
+/**
+ * Перевод пользователя в составе группы, которую конвейер фиксирует одной транзакцией.
+ */
+public record GroupTransfer(Long userId, TransferDto dto) {
+}
@@ -0,0 +1,16 @@
+package com.example.bankcards.service;
+
+/**
+ * Способ проведения перевода между картами, задаётся через {@code app.card.transfer.mode}.
+ */
+public enum TransferMode {
+    /** Обе карты блокируются SELECT ... FOR UPDATE в порядке возрастания id. */
+    PESSIMISTIC,
+    /** Условные UPDATE списания и зачисления без чтения сущностей. */
+    CONDITIONAL,
+    /**
+     * Карты читаются без блокировок, конфликт ловится по {@code @Version} при коммите,
+     * перевод повторяется {@code TransferRetryExecutor}. Для низкой конкуренции.
+     */
+    OPTIMISTIC
+}
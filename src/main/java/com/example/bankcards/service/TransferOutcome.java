@@ -0,0 +1,16 @@
+package com.example.bankcards.service;
+
+/**
+ * Результат перевода в виде HTTP-ответа: его сохраняют под ключом идемпотентности
+ * и отдают повторно, не трогая карты.
+ */
+public record TransferOutcome(int status, String body, boolean replayed) {
+
+    public static TransferOutcome ok() {
+        return new TransferOutcome(200, null, false);
+    }
+
+    public TransferOutcome asReplay() {
+        return new TransferOutcome(status, body, true);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.bankcards.service;
+
+import com.example.bankcards.dto.TransferDto;
+
+public interface TransferService {
+
+    /**
+     * Перевод между своими картами. С ключом идемпотентности повтор запроса
+     * возвращает сохранённый результат первого выполнения.
+     *
+     * @param idempotencyKey значение заголовка {@code Idempotency-Key}, может быть {@code null}
+     */
+    TransferOutcome transfer(Long userId, String idempotencyKey, TransferDto dto);
+}
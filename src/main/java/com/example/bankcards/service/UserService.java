@@ -1,6 +1,7 @@
 package com.example.bankcards.service;
 
 import com.example.bankcards.dto.CreateUserDto;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.UserDto;
 import com.example.bankcards.entity.enums.Role;
 
@@ -9,7 +10,10 @@ import java.util.Optional;
 
 public interface UserService {
 
-    List<UserDto> getAllUsers();
+    /**
+     * Пользователи по возрастанию id, keyset-страницами; role = null - все роли.
+     */
+    CursorPage<UserDto> getUsers(String cursor, int size, Role role);
 
     UserDto getUserById(long id);
 
@@ -0,0 +1,129 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.AsyncTransferDto;
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.AsyncTransfer;
+import com.example.bankcards.entity.enums.AsyncTransferStatus;
+import com.example.bankcards.exception.ExceptionHandlerAdvice;
+import com.example.bankcards.exception.TransferNotFoundException;
+import com.example.bankcards.repository.AsyncTransferRepository;
+import com.example.bankcards.service.AsyncTransferService;
+import com.example.bankcards.service.CardService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+
+@Service
+public class AsyncTransferServiceImpl implements AsyncTransferService {
+
+    private static final int RESUME_LIMIT = 1000;
+    private static final Logger log = LoggerFactory.getLogger(AsyncTransferServiceImpl.class);
+
+    private final AsyncTransferRepository asyncTransferRepository;
+    private final CardService cardService;
+    private final TransferRetryExecutor retryExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    public AsyncTransferServiceImpl(AsyncTransferRepository asyncTransferRepository,
+                                    CardService cardService,
+                                    TransferRetryExecutor retryExecutor,
+                                    PlatformTransactionManager transactionManager,
+                                    @Qualifier("asyncTransferExecutor") ExecutorService executor,
+                                    @Value("${app.card.transfer.async.max-concurrency:16}") int maxConcurrency) {
+        this.asyncTransferRepository = asyncTransferRepository;
+        this.cardService = cardService;
+        this.retryExecutor = retryExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+        // потоков может быть сколько угодно, соединений с БД - нет
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+    }
+
+    @Override
+    public AsyncTransferDto submit(Long userId, TransferDto dto) {
+        // до сохранения: NUMERIC(15,2) молча округлил бы сумму, а отказ пришёл бы только из воркера
+        TransferValidator.check(dto, "");
+        var transfer = asyncTransferRepository.save(new AsyncTransfer(
+                userId, dto.fromCardId(), dto.toCardId(), dto.amount(), Instant.now()));
+        log.debug("Перевод {} принят на асинхронное выполнение", transfer.getId());
+        executor.execute(() -> execute(transfer.getId(), userId, dto));
+        return toDto(transfer);
+    }
+
+    @Override
+    public AsyncTransferDto get(Long userId, UUID transferId) {
+        return asyncTransferRepository.findById(transferId)
+                .filter(t -> t.getUserId().equals(userId))
+                .map(AsyncTransferServiceImpl::toDto)
+                .orElseThrow(() -> new TransferNotFoundException("Перевод не найден"));
+    }
+
+    /**
+     * Переводы, оставшиеся в PENDING после перезапуска, ставятся в очередь заново:
+     * захват через markDone не даст выполнить один перевод дважды.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        // в пишущей транзакции, чтобы читать с основной БД, а не с отстающей реплики
+        var pending = transactionTemplate.execute(tx -> asyncTransferRepository.findByStatusOrderByCreatedAt(
+                AsyncTransferStatus.PENDING, Limit.of(RESUME_LIMIT)));
+        if (!pending.isEmpty()) {
+            log.info("Возобновляется асинхронных переводов: {}", pending.size());
+        }
+        for (var t : pending) {
+            var dto = new TransferDto(t.getFromCardId(), t.getToCardId(), t.getAmount());
+            executor.execute(() -> execute(t.getId(), t.getUserId(), dto));
+        }
+    }
+
+    private void execute(UUID id, Long userId, TransferDto dto) {
+        permits.acquireUninterruptibly();
+        try {
+            retryExecutor.execute(() -> transactionTemplate.execute(tx -> {
+                if (asyncTransferRepository.markDone(id, Instant.now()) == 1) {
+                    cardService.transfer(userId, dto);
+                }
+                return null;
+            }));
+            log.debug("Асинхронный перевод {} выполнен", id);
+        } catch (RuntimeException ex) {
+            var status = ExceptionHandlerAdvice.statusOf(ex);
+            String message = ex.getMessage();
+            if (ex instanceof OptimisticLockingFailureException) {
+                status = HttpStatus.CONFLICT;
+                message = ExceptionHandlerAdvice.OPTIMISTIC_CONFLICT_MESSAGE;
+            } else if (status == null) {
+                log.error("Асинхронный перевод {} завершился ошибкой", id, ex);
+                status = HttpStatus.INTERNAL_SERVER_ERROR;
+                message = "Внутренняя ошибка";
+            }
+            int errorStatus = status.value();
+            String errorMessage = message;
+            transactionTemplate.execute(tx ->
+                    asyncTransferRepository.markFailed(id, errorStatus, errorMessage, Instant.now()));
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static AsyncTransferDto toDto(AsyncTransfer transfer) {
+        return new AsyncTransferDto(transfer.getId(), transfer.getStatus(),
+                transfer.getErrorStatus(), transfer.getErrorMessage());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.service.CardExportFormat;
+import com.example.bankcards.service.CardExportService;
+import com.example.bankcards.service.CardService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Выгрузка всех карт. Карты читаются keyset-порциями через {@link CardService#getAllCards},
+ * каждая порция - отдельная короткая транзакция, поэтому медленный клиент не держит
+ * соединение с БД, а память не растёт с размером таблицы.
+ */
+@Service
+public class CardExportServiceImpl implements CardExportService {
+
+    private static final Logger log = LoggerFactory.getLogger(CardExportServiceImpl.class);
+
+    private final CardService cardService;
+    private final ObjectWriter jsonWriter;
+    private final int chunkSize;
+
+    public CardExportServiceImpl(CardService cardService,
+                                 ObjectMapper objectMapper,
+                                 @Value("${app.card.export.chunk-size:500}") int chunkSize) {
+        this.cardService = cardService;
+        this.jsonWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void export(CardExportFormat format, OutputStream out) throws IOException {
+        var writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == CardExportFormat.CSV) {
+            writer.write("id,ownerId,number,status,balance\n");
+        }
+        long exported = 0;
+        String cursor = null;
+        do {
+            var page = cardService.getAllCards(cursor, chunkSize);
+            for (var card : page.content()) {
+                if (format == CardExportFormat.CSV) {
+                    writeCsv(writer, card);
+                } else {
+                    jsonWriter.writeValue(writer, card);
+                    writer.write('\n');
+                }
+            }
+            writer.flush();
+            exported += page.content().size();
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        log.debug("Выгружено карт: {}", exported);
+    }
+
+    private static void writeCsv(Writer writer, CardDto card) throws IOException {
+        // маска, статус и сумма не содержат запятых и кавычек, экранирование не нужно
+        writer.write(Long.toString(card.id()));
+        writer.write(',');
+        writer.write(Long.toString(card.ownerId()));
+        writer.write(',');
+        writer.write(card.number() == null ? "" : card.number());
+        writer.write(',');
+        writer.write(card.status() == null ? "" : card.status().name());
+        writer.write(',');
+        writer.write(card.balance() == null ? "" : card.balance().toBigDecimal().toPlainString());
+        writer.write('\n');
+    }
+}
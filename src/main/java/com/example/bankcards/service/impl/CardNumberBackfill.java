@@ -0,0 +1,110 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.CardBlindIndex;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.CardMasker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Дозаполняет производные от номера колонки (card_last4, card_number_hmac) у карт,
+ * созданных до их появления: расшифровывает номер один раз, порциями по chunk-size
+ * в отдельных транзакциях. Новые карты получают колонки при создании, поэтому задача
+ * затихает после первого прохода, который ничего не дозаполнил.
+ */
+@Component
+public class CardNumberBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(CardNumberBackfill.class);
+
+    private final CardRepository cardRepository;
+    private final CardCrypto cardCrypto;
+    private final CardBlindIndex blindIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+    private volatile boolean completed;
+
+    public CardNumberBackfill(CardRepository cardRepository,
+                              CardCrypto cardCrypto,
+                              CardBlindIndex blindIndex,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.card.number-backfill.enabled:true}") boolean enabled,
+                              @Value("${app.card.number-backfill.chunk-size:500}") int chunkSize) {
+        this.cardRepository = cardRepository;
+        this.cardCrypto = cardCrypto;
+        this.blindIndex = blindIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Scheduled(fixedDelayString = "${app.card.number-backfill.interval:PT1M}")
+    public void run() {
+        if (!enabled || completed) {
+            return;
+        }
+        int updated = backfill();
+        if (updated > 0) {
+            // следующий запуск проверит, что за проход ничего не осталось
+            log.info("Дозаполнены производные колонки номера у карт: {}", updated);
+        } else {
+            completed = true;
+        }
+    }
+
+    /**
+     * Один полный проход по недозаполненным картам. Строки, которые не удалось
+     * расшифровать, пропускаются. Слепой индекс не пишется, если такой номер уже
+     * есть у другой карты: уникальный индекс откатил бы всю порцию.
+     * Возвращает число обновлённых карт.
+     */
+    public int backfill() {
+        long afterId = 0;
+        int total = 0;
+        while (true) {
+            long from = afterId;
+            var chunk = transactionTemplate.execute(tx -> {
+                var cards = cardRepository.findNotBackfilled(from, Limit.of(chunkSize));
+                int updated = 0;
+                for (var card : cards) {
+                    String number;
+                    try {
+                        number = cardCrypto.decrypt(card.getCardNumberEnc(), card.getCardNumber());
+                    } catch (IllegalStateException e) {
+                        log.warn("Не удалось расшифровать номер карты {}: {}", card.getId(), e.getMessage());
+                        continue;
+                    }
+                    String last4 = card.getCardLast4() == null ? CardMasker.last4(number) : null;
+                    String hmac = null;
+                    if (card.getCardNumberHmac() == null) {
+                        hmac = blindIndex.of(number);
+                        if (cardRepository.existsByCardNumberHmac(hmac)) {
+                            log.warn("Номер карты {} совпадает с номером другой карты", card.getId());
+                            hmac = null;
+                        }
+                    }
+                    if (last4 != null || hmac != null) {
+                        updated += cardRepository.backfillNumberColumns(card.getId(), last4, hmac);
+                    }
+                }
+                return new Chunk(cards.isEmpty() ? from : cards.get(cards.size() - 1).getId(), cards.size(), updated);
+            });
+            total += chunk.updated();
+            if (chunk.size() < chunkSize) {
+                return total;
+            }
+            afterId = chunk.lastId();
+        }
+    }
+
+    private record Chunk(long lastId, int size, int updated) {
+    }
+}
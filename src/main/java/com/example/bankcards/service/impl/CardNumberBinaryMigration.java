@@ -0,0 +1,89 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.util.CardCrypto;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Переводит номера карт из текстового столбца card_number в двоичный card_number_enc.
+ * Расшифровка не нужна: iv и шифротекст те же, меняется только представление.
+ * Идёт порциями по возрастанию id, каждая порция - отдельная транзакция. Завершается
+ * после прохода, который ничего не перевёл.
+ */
+@Component
+public class CardNumberBinaryMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(CardNumberBinaryMigration.class);
+
+    private final CardRepository cardRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+    private volatile boolean completed;
+
+    public CardNumberBinaryMigration(CardRepository cardRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${app.card.binary-migration.enabled:true}") boolean enabled,
+                                     @Value("${app.card.binary-migration.chunk-size:500}") int chunkSize) {
+        this.cardRepository = cardRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    @Scheduled(fixedDelayString = "${app.card.binary-migration.interval:PT1M}")
+    public void run() {
+        if (!enabled || completed) {
+            return;
+        }
+        int migrated = migrate();
+        if (migrated > 0) {
+            // следующий запуск проверит, что в текстовом формате ничего не осталось
+            log.info("Номера карт переведены в двоичный формат: {}", migrated);
+        } else {
+            completed = true;
+        }
+    }
+
+    /**
+     * Один полный проход. Значения, которые не разбираются как "base64(iv):base64(ct)",
+     * остаются в текстовом столбце. Возвращает число переведённых карт.
+     */
+    public int migrate() {
+        long afterId = 0;
+        int total = 0;
+        while (true) {
+            long from = afterId;
+            var chunk = transactionTemplate.execute(tx -> {
+                var cards = cardRepository.findWithTextNumber(from, Limit.of(chunkSize));
+                int migrated = 0;
+                for (var card : cards) {
+                    byte[] binary;
+                    try {
+                        binary = CardCrypto.toBinary(card.getCardNumber());
+                    } catch (IllegalArgumentException e) {
+                        log.warn("Номер карты {} не в формате iv:ct: {}", card.getId(), e.getMessage());
+                        continue;
+                    }
+                    migrated += cardRepository.moveNumberToBinary(card.getId(), card.getCardNumber(), binary);
+                }
+                return new Chunk(cards.isEmpty() ? from : cards.get(cards.size() - 1).getId(), cards.size(), migrated);
+            });
+            total += chunk.migrated();
+            if (chunk.size() < chunkSize) {
+                return total;
+            }
+            afterId = chunk.lastId();
+        }
+    }
+
+    private record Chunk(long lastId, int size, int migrated) {
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.util.CardCrypto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Перешифровывает номера карт активным ключом после смены app.card.crypto.active-key-id,
+ * а в конвертном режиме - переводит в конвертный формат все значения, записанные иначе.
+ * Идёт по cards порциями по возрастанию id; порция выбирается одним запросом и
+ * записывается одним пакетом UPDATE. Позиция хранится в памяти, а строки на активном
+ * ключе в выборку не попадают, поэтому после перезапуска проход продолжается без
+ * повторной работы. Строка, изменившаяся между выборкой и UPDATE, пропускается; после
+ * прохода с изменениями задача проходит таблицу ещё раз и завершается только после
+ * прохода, в котором перешифровывать было нечего.
+ * Темп подстраивается под задержку БД: если порция обработана медленнее
+ * target-latency, пауза между порциями удваивается (до max-pause), иначе уменьшается вдвое.
+ */
+@Component
+public class CardReencryptionJob {
+
+    private static final Logger log = LoggerFactory.getLogger(CardReencryptionJob.class);
+
+    private static final String SELECT_NOT_ON_KEY = """
+            select id, card_number, card_number_enc from cards
+            where id > ? and (case when get_byte(card_number_enc, 0) = 2
+                                   then get_byte(card_number_enc, 1) else 0 end) <> ?
+            order by id limit ?""";
+    private static final String SELECT_NOT_ENVELOPE = """
+            select id, card_number, card_number_enc from cards
+            where id > ? and coalesce(get_byte(card_number_enc, 0), 0) <> 3
+            order by id limit ?""";
+    private static final String UPDATE_ROW = """
+            update cards set card_number_enc = ?, card_number = null
+            where id = ? and card_number is not distinct from ? and card_number_enc is not distinct from ?""";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CardCrypto cardCrypto;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final long runBudgetNanos;
+    private final long targetLatencyNanos;
+    private final long maxPauseMillis;
+    private final Counter reencrypted;
+    private final Counter failures;
+    private final Timer chunkLatency;
+    private volatile long position;
+    private volatile long pauseMillis;
+    private volatile double rowsPerSecond;
+    private volatile boolean completed;
+    // перешифровано и пропущено из-за параллельного изменения за текущий проход
+    private int passChanged;
+
+    public CardReencryptionJob(JdbcTemplate jdbcTemplate,
+                               CardCrypto cardCrypto,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.card.reencryption.enabled:true}") boolean enabled,
+                               @Value("${app.card.reencryption.chunk-size:200}") int chunkSize,
+                               @Value("${app.card.reencryption.run-budget:5s}") Duration runBudget,
+                               @Value("${app.card.reencryption.target-latency:100ms}") Duration targetLatency,
+                               @Value("${app.card.reencryption.max-pause:5s}") Duration maxPause) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cardCrypto = cardCrypto;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.runBudgetNanos = runBudget.toNanos();
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.maxPauseMillis = maxPause.toMillis();
+        this.reencrypted = Counter.builder("card.reencryption.rows")
+                .description("Номера карт, перешифрованные активным ключом")
+                .register(meterRegistry);
+        this.failures = Counter.builder("card.reencryption.failures")
+                .description("Номера карт, которые не удалось расшифровать при перешифровании")
+                .register(meterRegistry);
+        this.chunkLatency = Timer.builder("card.reencryption.chunk.latency")
+                .description("Время выборки и записи одной порции в БД")
+                .register(meterRegistry);
+        Gauge.builder("card.reencryption.position", this, job -> job.position)
+                .description("Id последней обработанной карты")
+                .register(meterRegistry);
+        Gauge.builder("card.reencryption.rate", this, job -> job.rowsPerSecond)
+                .description("Скорость перешифрования на последней порции, строк в секунду")
+                .baseUnit("rows/s")
+                .register(meterRegistry);
+        Gauge.builder("card.reencryption.pause", this, job -> job.pauseMillis)
+                .description("Текущая пауза между порциями")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.card.reencryption.interval:PT10S}")
+    public void run() {
+        if (!enabled || completed) {
+            return;
+        }
+        long deadline = System.nanoTime() + runBudgetNanos;
+        try {
+            while (System.nanoTime() < deadline) {
+                if (!processChunk()) {
+                    if (passChanged == 0) {
+                        completed = true;
+                        log.info("Перешифрование номеров карт завершено");
+                        return;
+                    }
+                    // повторный проход подбирает пропущенные строки и проверяет, что ничего не осталось
+                    passChanged = 0;
+                    position = 0;
+                }
+                if (pauseMillis > 0) {
+                    TimeUnit.MILLISECONDS.sleep(pauseMillis);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Обрабатывает одну порцию начиная с текущей позиции.
+     * Возвращает false, когда строк не на активном ключе дальше нет.
+     */
+    boolean processChunk() {
+        long started = System.nanoTime();
+        RowMapper<Row> mapper = (rs, i) -> new Row(rs.getLong(1), rs.getString(2), rs.getBytes(3));
+        var rows = cardCrypto.writesEnvelope()
+                ? jdbcTemplate.query(SELECT_NOT_ENVELOPE, mapper, position, chunkSize)
+                : jdbcTemplate.query(SELECT_NOT_ON_KEY, mapper, position, cardCrypto.activeKeyId(), chunkSize);
+        long dbNanos = System.nanoTime() - started;
+
+        List<Object[]> updates = new ArrayList<>(rows.size());
+        for (var row : rows) {
+            try {
+                String number = cardCrypto.decrypt(row.binary(), row.text());
+                updates.add(new Object[]{cardCrypto.encryptToBytes(number), row.id(), row.text(), row.binary()});
+            } catch (IllegalStateException e) {
+                failures.increment();
+                log.warn("Не удалось перешифровать номер карты {}: {}", row.id(), e.getMessage());
+            }
+        }
+        if (!updates.isEmpty()) {
+            long writeStarted = System.nanoTime();
+            int[] counts = transactionTemplate.execute(tx -> jdbcTemplate.batchUpdate(UPDATE_ROW, updates,
+                    updates.size(), (ps, args) -> {
+                        ps.setBytes(1, (byte[]) args[0]);
+                        ps.setLong(2, (Long) args[1]);
+                        ps.setString(3, (String) args[2]);
+                        ps.setBytes(4, (byte[]) args[3]);
+                    }))[0];
+            dbNanos += System.nanoTime() - writeStarted;
+            int done = 0;
+            for (int c : counts) {
+                done += Math.max(c, 0);
+            }
+            reencrypted.increment(done);
+            passChanged += updates.size();
+        }
+        chunkLatency.record(dbNanos, TimeUnit.NANOSECONDS);
+        adjustPause(dbNanos);
+        long elapsed = System.nanoTime() - started;
+        rowsPerSecond = elapsed == 0 ? 0 : updates.size() * 1e9 / elapsed;
+        if (!rows.isEmpty()) {
+            position = rows.get(rows.size() - 1).id();
+        }
+        return rows.size() == chunkSize;
+    }
+
+    private void adjustPause(long dbNanos) {
+        if (dbNanos > targetLatencyNanos) {
+            pauseMillis = Math.min(maxPauseMillis, Math.max(10, pauseMillis * 2));
+        } else {
+            pauseMillis = pauseMillis / 2;
+        }
+    }
+
+    private record Row(long id, String text, byte[] binary) {
+    }
+}
@@ -1,26 +1,57 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.dto.BatchTransferResultDto;
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardTransactionDto;
+import com.example.bankcards.dto.CardView;
 import com.example.bankcards.dto.CreateCardDto;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransferDto;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardTransaction;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.CardTransactionType;
 import com.example.bankcards.exception.*;
+import com.example.bankcards.repository.CardBalanceBucketRepository;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
 import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardsChangedEvent;
+import com.example.bankcards.service.GroupTransfer;
+import com.example.bankcards.service.TransferMode;
+import com.example.bankcards.util.CardBlindIndex;
 import com.example.bankcards.util.CardCrypto;
 import com.example.bankcards.util.CardMasker;
 import com.example.bankcards.util.Luhn;
+import com.example.bankcards.util.Money;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 @Transactional
@@ -29,25 +60,54 @@ public class CardServiceImpl implements CardService {
     private final CardRepository cardRepository;
     private final UserRepository userRepository;
     private final CardCrypto cardCrypto;
+    private final CardBlindIndex blindIndex;
+    private final CardTransactionRepository cardTransactionRepository;
+    private final CardBalanceBucketRepository bucketRepository;
+    private final TransferMode transferMode;
+    private final boolean stripingEnabled;
+    private final ApplicationEventPublisher events;
+    private final UserCardsCache userCardsCache;
+    private static final int MAX_BATCH_SIZE = 10_000;
+    private static final int MAX_BALANCE_BUCKETS = 64;
+    private static final int MAX_HISTORY_PAGE_SIZE = 100;
+    private static final int MAX_CARDS_PAGE_SIZE = 1000;
+    private static final int MAX_USER_CARDS_PAGE_SIZE = 100;
+    private static final String CARD_NUMBER_HMAC_INDEX = "ux_cards_card_number_hmac";
     private static final Logger log = LoggerFactory.getLogger(CardServiceImpl.class);
 
-    public CardServiceImpl(CardRepository cardRepository, UserRepository userRepository, CardCrypto cardCrypto) {
+    public CardServiceImpl(CardRepository cardRepository,
+                           UserRepository userRepository,
+                           CardCrypto cardCrypto,
+                           CardBlindIndex blindIndex,
+                           CardTransactionRepository cardTransactionRepository,
+                           CardBalanceBucketRepository bucketRepository,
+                           @Value("${app.card.transfer.mode:PESSIMISTIC}") TransferMode transferMode,
+                           @Value("${app.card.transfer.striping.enabled:false}") boolean stripingEnabled,
+                           ApplicationEventPublisher events,
+                           UserCardsCache userCardsCache) {
         this.cardRepository = cardRepository;
         this.userRepository = userRepository;
         this.cardCrypto = cardCrypto;
+        this.blindIndex = blindIndex;
+        this.cardTransactionRepository = cardTransactionRepository;
+        this.bucketRepository = bucketRepository;
+        this.transferMode = transferMode;
+        this.stripingEnabled = stripingEnabled;
+        this.events = events;
+        this.userCardsCache = userCardsCache;
     }
 
     @Override
-    public List<CardDto> getAllCards() {
-        return cardRepository.findAll()
-                .stream().
-                map(c -> new CardDto(
-                        c.getId(),
-                        c.getOwner().getId(),
-                        CardMasker.mask(cardCrypto.decrypt(c.getCardNumber())),
-                        c.getStatus(),
-                        c.getBalance()))
-                .toList();
+    @Transactional(readOnly = true)
+    public CursorPage<CardDto> getAllCards(String cursor, int size) {
+        // как и в истории операций: одна лишняя запись вместо COUNT, позиция - id последней карты
+        int pageSize = Math.max(1, Math.min(size, MAX_CARDS_PAGE_SIZE));
+        var cards = cardRepository.findViewsAfter(IdCursor.afterId(cursor), Limit.of(pageSize + 1));
+        var content = cards.stream().limit(pageSize).map(this::toDto).toList();
+        if (cards.size() <= pageSize) {
+            return new CursorPage<>(content, null);
+        }
+        return new CursorPage<>(content, new IdCursor(content.get(pageSize - 1).id()).encode());
     }
 
     @Override
@@ -59,17 +119,48 @@ public class CardServiceImpl implements CardService {
         if (!Luhn.isValid(cardDto.number())) {
             throw new InvalidCardNumberException("Некорректный номер карты");
         }
-        card.setCardNumber(cardCrypto.encrypt(cardDto.number()));
+        checkBalance(cardDto.balance());
+        String hmac = blindIndex.of(cardDto.number());
+        if (cardRepository.existsByCardNumberHmac(hmac)) {
+            throw new CardAlreadyExistsException("Карта с таким номером уже существует");
+        }
+        card.setCardNumberHmac(hmac);
+        card.setCardNumberEnc(cardCrypto.encryptToBytes(cardDto.number()));
+        card.setCardLast4(CardMasker.last4(cardDto.number()));
         card.setExpirationDate(cardDto.expiryDate());
         card.setStatus(CardStatus.ACTIVE);
-        card.setBalance(cardDto.balance());
-        var savedCard = cardRepository.save(card);
+        card.setBalance(cardDto.balance() == null ? null : Money.of(cardDto.balance()));
+        Card savedCard;
+        try {
+            // IDENTITY: INSERT уходит сразу, нарушение уникальности видно здесь
+            savedCard = cardRepository.save(card);
+        } catch (DataIntegrityViolationException e) {
+            // параллельное создание той же карты прошло проверку одновременно с нами
+            if (e.getCause() instanceof ConstraintViolationException violation
+                    && CARD_NUMBER_HMAC_INDEX.equals(violation.getConstraintName())) {
+                throw new CardAlreadyExistsException("Карта с таким номером уже существует");
+            }
+            throw e;
+        }
+        ownerCardsChanged(savedCard.getOwner().getId());
         String masked = CardMasker.mask(cardDto.number());
         log.debug("Карта добавлена");
         return new CardDto(savedCard.getId(), savedCard.getOwner().getId(),
                 masked, savedCard.getStatus(), savedCard.getBalance());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public CardDto findByNumber(String number) {
+        if (number == null || number.chars().noneMatch(c -> c >= '0' && c <= '9')) {
+            throw new InvalidCardNumberException("Некорректный номер карты");
+        }
+        var card = cardRepository.findByCardNumberHmac(blindIndex.of(number))
+                .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
+        return new CardDto(card.getId(), card.getOwner().getId(),
+                maskedNumber(card), card.getStatus(), balanceOf(card));
+    }
+
     @Override
     public CardDto blockCard(Long cardId) {
         log.debug("Запрос на блокировку карты: {}", cardId );
@@ -77,10 +168,11 @@ public class CardServiceImpl implements CardService {
                 .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
         card.setStatus(CardStatus.BLOCKED);
         var savedCard = cardRepository.save(card);
-        String masked = CardMasker.mask(cardCrypto.decrypt(savedCard.getCardNumber()));
+        ownerCardsChanged(savedCard.getOwner().getId());
+        String masked = maskedNumber(savedCard);
         log.debug("Заблокирована карта с id: {}", cardId);
         return new CardDto(savedCard.getId(), savedCard.getOwner().getId(),
-                masked, savedCard.getStatus(), savedCard.getBalance());
+                masked, savedCard.getStatus(), balanceOf(savedCard));
     }
 
     @Override
@@ -90,19 +182,20 @@ public class CardServiceImpl implements CardService {
                 .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
         card.setStatus(CardStatus.ACTIVE);
         var savedCard = cardRepository.save(card);
-        String masked = CardMasker.mask(cardCrypto.decrypt(savedCard.getCardNumber()));
+        ownerCardsChanged(savedCard.getOwner().getId());
+        String masked = maskedNumber(savedCard);
         log.debug("Карта с id: {} активирована", cardId);
         return new CardDto(savedCard.getId(), savedCard.getOwner().getId(),
-                masked, savedCard.getStatus(), savedCard.getBalance());
+                masked, savedCard.getStatus(), balanceOf(savedCard));
     }
 
     @Override
     public void deleteCard(Long cardId) {
         log.debug("Запрос на удаление карты id: {}", cardId );
-        if (!cardRepository.existsById(cardId)) {
-            throw new CardNotFoundException("Карта не найдена");
-        }
+        var ownerId = cardRepository.findOwnerIdById(cardId)
+                .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
         cardRepository.deleteById(cardId);
+        ownerCardsChanged(ownerId);
         log.debug("Карта удалена: {}", cardId );
     }
 
@@ -116,52 +209,508 @@ public class CardServiceImpl implements CardService {
         }
         card.setStatus(CardStatus.BLOCKED);
         var savedCard = cardRepository.save(card);
-        String masked = CardMasker.mask(cardCrypto.decrypt(savedCard.getCardNumber()));
+        ownerCardsChanged(userId);
+        String masked = maskedNumber(savedCard);
         log.debug("Карта успешно заблокирована: {}", cardId);
         return new CardDto(savedCard.getId(), savedCard.getOwner().getId(),
-                masked, savedCard.getStatus(), savedCard.getBalance());
+                masked, savedCard.getStatus(), balanceOf(savedCard));
+    }
+
+    @Override
+    public CardDto setBalanceBuckets(Long cardId, int buckets) {
+        log.debug("Запрос на расщепление баланса карты {} на {} корзин", cardId, buckets);
+        if (buckets < 0 || buckets > MAX_BALANCE_BUCKETS) {
+            throw new InvalidCardDataException("Число корзин должно быть от 0 до " + MAX_BALANCE_BUCKETS);
+        }
+        if (buckets > 0 && !stripingEnabled) {
+            // без флага переводы не смотрят в корзины и не увидят зачисленного в них;
+            // слить корзины обратно (0) можно всегда, в том числе перед выключением флага
+            throw new InvalidCardDataException("Расщепление баланса выключено (app.card.transfer.striping.enabled)");
+        }
+        var card = lockCard(cardId);
+        if (card.getBalanceBuckets() > 0) {
+            var total = card.getBalance().plus(Money.of(bucketRepository.sumByCardId(cardId)));
+            if (TransferValidator.MAX_BALANCE.isLessThan(total)) {
+                // параллельные зачисления в корзины могли вместе превысить предел
+                throw new InvalidCardDataException("Баланс карты с корзинами превышает "
+                        + TransferValidator.MAX_AMOUNT.toPlainString() + ", слить корзины нельзя");
+            }
+            card.setBalance(total);
+            bucketRepository.deleteByCardId(cardId);
+        }
+        if (buckets > 0) {
+            bucketRepository.create(cardId, buckets);
+        }
+        card.setBalanceBuckets(buckets);
+        userCardsCache.evictAfterCommit(card.getOwner().getId());
+        log.debug("Баланс карты {} расщеплён на {} корзин", cardId, buckets);
+        return new CardDto(card.getId(), card.getOwner().getId(),
+                maskedNumber(card), card.getStatus(), card.getBalance());
     }
 
     @Override
     public void transfer(Long userId, TransferDto dto) {
         log.debug("Запрос на перевод средств от пользователя: {}, {}", userId, dto);
-        if (dto.fromCardId().equals(dto.toCardId())) {
-            throw new InvalidTransferException("Карты совпадают");
+        TransferValidator.check(dto, "");
+        var amount = Money.of(dto.amount());
+        List<Long> striped = stripingEnabled
+                ? cardRepository.findStripedIds(List.of(dto.fromCardId(), dto.toCardId()))
+                : List.of();
+        if (!striped.isEmpty()) {
+            // корзины обслуживает только блокирующий путь, независимо от режима
+            transferLocked(userId, dto, amount, striped.contains(dto.toCardId()));
+        } else {
+            switch (transferMode) {
+                case CONDITIONAL -> transferConditional(userId, dto, amount);
+                case OPTIMISTIC -> transferOptimistic(userId, dto, amount);
+                default -> transferLocked(userId, dto, amount, false);
+            }
+        }
+        // записи журнала уходят одним JDBC-пакетом при коммите, после UPDATE карт.
+        // CardsChangedEvent не нужен: перевод идёт между активными картами одного
+        // владельца, число карт и сумма по статусам не меняются; меняются балансы
+        cardTransactionRepository.saveAll(journalEntries(dto, now()));
+        userCardsCache.evictAfterCommit(userId);
+        log.debug("Перевод выполнен");
+    }
+
+    @Override
+    public BatchTransferResultDto transferBatch(Long userId, List<TransferDto> transfers) {
+        log.debug("Запрос на пакетный перевод от пользователя: {}, переводов: {}", userId, transfers.size());
+        if (transfers.isEmpty()) {
+            throw new InvalidTransferException("Пакет переводов пуст");
+        }
+        if (transfers.size() > MAX_BATCH_SIZE) {
+            throw new InvalidTransferException("В пакете не может быть больше " + MAX_BATCH_SIZE + " переводов");
+        }
+        var cardIds = new TreeSet<Long>();
+        for (int i = 0; i < transfers.size(); i++) {
+            var dto = transfers.get(i);
+            TransferValidator.check(dto, batchItem(i));
+            cardIds.add(dto.fromCardId());
+            cardIds.add(dto.toCardId());
+        }
+        // одна выборка блокирует все карты пакета в порядке возрастания id
+        var cards = cardRepository.findAllByIdForUpdate(cardIds);
+        if (cards.size() != cardIds.size()) {
+            throw new CardNotFoundException("Карта не найдена");
+        }
+        var balances = new HashMap<Long, Money>();
+        for (var card : cards) {
+            if (!card.getOwner().getId().equals(userId)) {
+                throw new ForbiddenOperationException("Перевод только между своими картами");
+            }
+            if (card.getStatus() != CardStatus.ACTIVE) {
+                throw new InvalidTransferException("Все карты пакета должны быть активированы");
+            }
+            balances.put(card.getId(), balanceOf(card));
+        }
+        var initial = new HashMap<>(balances);
+        // переводы проигрываются по порядку в памяти, поэтому пакет проходит
+        // ровно тогда, когда прошла бы та же последовательность одиночных переводов
+        for (int i = 0; i < transfers.size(); i++) {
+            var dto = transfers.get(i);
+            var amount = Money.of(dto.amount());
+            var fromBalance = balances.get(dto.fromCardId());
+            if (fromBalance.isLessThan(amount)) {
+                throw new InsufficientFundsException("Недостаточно средств" + batchItem(i));
+            }
+            TransferValidator.checkCredit(balances.get(dto.toCardId()), amount, batchItem(i));
+            balances.put(dto.fromCardId(), fromBalance.minus(amount));
+            balances.merge(dto.toCardId(), amount, Money::plus);
+        }
+        var createdAt = now();
+        var entries = new ArrayList<CardTransaction>(transfers.size() * 2);
+        for (var dto : transfers) {
+            entries.addAll(journalEntries(dto, createdAt));
+        }
+        cardTransactionRepository.saveAll(entries);
+        int updated = applyBalances(cards, balances, initial);
+        log.debug("Пакетный перевод выполнен, изменено карт: {}", updated);
+        return new BatchTransferResultDto(transfers.size(), updated);
+    }
+
+    @Override
+    public List<RuntimeException> transferGroup(List<GroupTransfer> transfers) {
+        var failures = new ArrayList<RuntimeException>(Collections.nCopies(transfers.size(), null));
+        var cardIds = new TreeSet<Long>();
+        for (int i = 0; i < transfers.size(); i++) {
+            var dto = transfers.get(i).dto();
+            try {
+                TransferValidator.check(dto, "");
+            } catch (InvalidTransferException e) {
+                failures.set(i, e);
+                continue;
+            }
+            cardIds.add(dto.fromCardId());
+            cardIds.add(dto.toCardId());
+        }
+        if (cardIds.isEmpty()) {
+            return failures;
+        }
+        var cards = cardRepository.findAllByIdForUpdate(cardIds);
+        var byId = new HashMap<Long, Card>();
+        var balances = new HashMap<Long, Money>();
+        for (var card : cards) {
+            byId.put(card.getId(), card);
+            balances.put(card.getId(), balanceOf(card));
+        }
+        var initial = new HashMap<>(balances);
+        var createdAt = now();
+        var entries = new ArrayList<CardTransaction>();
+        // как и в пакете, переводы проигрываются по порядку поступления, но отказ
+        // одного только пропускает его, а не откатывает всю группу
+        for (int i = 0; i < transfers.size(); i++) {
+            if (failures.get(i) != null) {
+                continue;
+            }
+            var transfer = transfers.get(i);
+            var dto = transfer.dto();
+            try {
+                var from = byId.get(dto.fromCardId());
+                var to = byId.get(dto.toCardId());
+                if (from == null || to == null) {
+                    throw new CardNotFoundException("Карта не найдена");
+                }
+                checkCards(transfer.userId(), from, to);
+                var amount = Money.of(dto.amount());
+                var fromBalance = balances.get(from.getId());
+                if (fromBalance.isLessThan(amount)) {
+                    throw new InsufficientFundsException("Недостаточно средств");
+                }
+                // переполнение NUMERIC(15,2) при коммите откатило бы всю группу
+                TransferValidator.checkCredit(balances.get(to.getId()), amount, "");
+                balances.put(from.getId(), fromBalance.minus(amount));
+                balances.merge(to.getId(), amount, Money::plus);
+                entries.addAll(journalEntries(dto, createdAt));
+            } catch (CardNotFoundException | ForbiddenOperationException
+                     | InvalidTransferException | InsufficientFundsException e) {
+                failures.set(i, e);
+            }
+        }
+        cardTransactionRepository.saveAll(entries);
+        int updated = applyBalances(cards, balances, initial);
+        log.debug("Группа переводов зафиксирована: переводов {}, изменено карт {}", transfers.size(), updated);
+        return failures;
+    }
+
+    /**
+     * В БД уходит только итоговое сальдо: не больше одного UPDATE на карту.
+     * Карты должны быть заблокированы монопольно.
+     */
+    private int applyBalances(Collection<Card> cards, Map<Long, Money> balances, Map<Long, Money> initial) {
+        int updated = 0;
+        for (var card : cards) {
+            var balance = balances.get(card.getId());
+            if (!balance.equals(initial.get(card.getId()))) {
+                // корзины сливаются в основной баланс: зачислений в них сейчас нет
+                if (card.getBalanceBuckets() > 0) {
+                    bucketRepository.reset(card.getId());
+                }
+                card.setBalance(balance);
+                userCardsCache.evictAfterCommit(card.getOwner().getId());
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Баланс должен уложиться в Money и в NUMERIC(15,2): иначе ArithmeticException
+     * или ошибка БД дошли бы до клиента как 500.
+     */
+    private static void checkBalance(BigDecimal balance) {
+        if (balance == null) {
+            return;
+        }
+        if (balance.stripTrailingZeros().scale() > 2) {
+            throw new InvalidCardDataException("Баланс указывается с точностью до копейки");
+        }
+        if (balance.abs().compareTo(TransferValidator.MAX_AMOUNT) > 0) {
+            throw new InvalidCardDataException("Баланс не может превышать по модулю " + TransferValidator.MAX_AMOUNT.toPlainString());
+        }
+    }
+
+    private static String batchItem(int index) {
+        return " (перевод №" + (index + 1) + ")";
+    }
+
+    private static List<CardTransaction> journalEntries(TransferDto dto, Instant createdAt) {
+        return List.of(
+                new CardTransaction(dto.fromCardId(), dto.toCardId(), CardTransactionType.DEBIT, dto.amount(), createdAt),
+                new CardTransaction(dto.toCardId(), dto.fromCardId(), CardTransactionType.CREDIT, dto.amount(), createdAt));
+    }
+
+    private static Instant now() {
+        // PostgreSQL хранит микросекунды: курсор должен совпадать с сохранённым значением
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private void transferLocked(Long userId, TransferDto dto, Money amount, boolean creditBucket) {
+        // строки блокируются в порядке возрастания id: встречные переводы
+        // A->B и B->A ждут друг друга на первой карте, а не на разных
+        Card from;
+        Card to;
+        if (dto.fromCardId() < dto.toCardId()) {
+            from = lockCard(dto.fromCardId());
+            to = lockCreditTarget(dto.toCardId(), creditBucket);
+        } else {
+            to = lockCreditTarget(dto.toCardId(), creditBucket);
+            from = lockCard(dto.fromCardId());
+        }
+        checkCards(userId, from, to);
+        // под разделяемой блокировкой параллельные зачисления в корзины друг друга не видят и
+        // вместе могут превысить предел; тогда откажет слияние корзин, а не запись в БД
+        var toBalance = creditBucket
+                ? to.getBalance().plus(Money.of(bucketRepository.sumByCardId(to.getId())))
+                : to.getBalance();
+        TransferValidator.checkCredit(toBalance, amount, "");
+        debitLocked(from, amount);
+        cardRepository.save(from);
+        if (creditBucket) {
+            creditBucket(to, amount);
+        } else {
+            to.setBalance(to.getBalance().plus(amount));
+            cardRepository.save(to);
+        }
+    }
+
+    private Card lockCreditTarget(Long cardId, boolean creditBucket) {
+        if (!creditBucket) {
+            return lockCard(cardId);
+        }
+        return cardRepository.findByIdForShare(cardId)
+                .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
+    }
+
+    /**
+     * Списание под монопольной блокировкой карты. Если основного баланса не хватает,
+     * корзины сливаются в него: параллельных зачислений в корзины в этот момент нет,
+     * они держат разделяемую блокировку той же строки.
+     */
+    private void debitLocked(Card from, Money amount) {
+        if (!from.getBalance().isLessThan(amount)) {
+            from.setBalance(from.getBalance().minus(amount));
+            return;
         }
-        if (dto.amount() == null || dto.amount().compareTo(BigDecimal.ZERO) <= 0) {
-            throw new InvalidTransferException("Сумма должна быть больше 0");
+        if (from.getBalanceBuckets() > 0) {
+            var total = from.getBalance().plus(Money.of(bucketRepository.sumByCardId(from.getId())));
+            if (!total.isLessThan(amount)) {
+                checkFoldedBalance(total.minus(amount));
+                bucketRepository.reset(from.getId());
+                from.setBalance(total.minus(amount));
+                return;
+            }
         }
+        throw new InsufficientFundsException("Недостаточно средств");
+    }
+
+    private static void checkFoldedBalance(Money balance) {
+        if (TransferValidator.MAX_BALANCE.isLessThan(balance)) {
+            throw new InvalidTransferException("Баланс карты с корзинами превышает "
+                    + TransferValidator.MAX_AMOUNT.toPlainString() + ", слить корзины нельзя");
+        }
+    }
+
+    private void creditBucket(Card to, Money amount) {
+        if (to.getBalanceBuckets() == 0) {
+            // корзины убрали между проверкой и блокировкой: перевод повторит TransferService
+            throw new ObjectOptimisticLockingFailureException(Card.class, to.getId());
+        }
+        int bucket = ThreadLocalRandom.current().nextInt(to.getBalanceBuckets());
+        if (bucketRepository.credit(to.getId(), bucket, amount.toBigDecimal()) == 0) {
+            throw new IllegalStateException("Нет корзины " + bucket + " у карты " + to.getId());
+        }
+    }
+
+    private Money balanceOf(Card card) {
+        if (card.getBalanceBuckets() == 0) {
+            return card.getBalance();
+        }
+        // не card.getBalance() + сумма корзин: без блокировки карты их могли слить между запросами
+        return cardRepository.findTotalBalanceById(card.getId())
+                .map(Money::of)
+                .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
+    }
+
+    private void transferOptimistic(Long userId, TransferDto dto, Money amount) {
+        var from = cardRepository.findById(dto.fromCardId())
+                .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
+        var to = cardRepository.findById(dto.toCardId())
+                .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
+        checkCards(userId, from, to);
+        if (from.getBalance().isLessThan(amount)) {
+            throw new InsufficientFundsException("Недостаточно средств");
+        }
+        TransferValidator.checkCredit(to.getBalance(), amount, "");
+        // UPDATE ... WHERE version = ? при коммите: если карту успели изменить,
+        // транзакция откатится с ObjectOptimisticLockingFailureException
+        from.setBalance(from.getBalance().minus(amount));
+        to.setBalance(to.getBalance().plus(amount));
+    }
+
+    private void transferConditional(Long userId, TransferDto dto, Money amount) {
+        // тот же порядок по id, что и в transferLocked, чтобы UPDATE встречных
+        // переводов не брали блокировки строк крест-накрест
+        if (dto.fromCardId() < dto.toCardId()) {
+            debit(userId, dto, amount);
+            credit(userId, dto, amount);
+        } else {
+            credit(userId, dto, amount);
+            debit(userId, dto, amount);
+        }
+    }
+
+    private void debit(Long userId, TransferDto dto, Money amount) {
+        if (cardRepository.debit(dto.fromCardId(), userId, amount) == 0) {
+            rejectConditional(userId, dto);
+            throw new InsufficientFundsException("Недостаточно средств");
+        }
+    }
+
+    private void credit(Long userId, TransferDto dto, Money amount) {
+        if (cardRepository.credit(dto.toCardId(), userId, amount, TransferValidator.MAX_BALANCE) == 0) {
+            var to = rejectConditional(userId, dto);
+            TransferValidator.checkCredit(to.getBalance(), amount, "");
+            throw new InvalidTransferException("Обе карты должны быть активированы");
+        }
+    }
+
+    /**
+     * Причину отказа условного UPDATE выясняем чтением только на этой, редкой, ветке.
+     * Если карты найдены, свои и активны, не прошло условие самого UPDATE: для списания
+     * это баланс, для зачисления - предел баланса или статус, сменившийся конкурентно.
+     */
+    private Card rejectConditional(Long userId, TransferDto dto) {
         var from = cardRepository.findById(dto.fromCardId())
                 .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
         var to = cardRepository.findById(dto.toCardId())
                 .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
+        checkCards(userId, from, to);
+        return to;
+    }
+
+    private void checkCards(Long userId, Card from, Card to) {
         if (!(from.getOwner().getId().equals(userId) && to.getOwner().getId().equals(userId))) {
             throw new ForbiddenOperationException("Перевод только между своими картами");
         }
         if (from.getStatus() != CardStatus.ACTIVE || to.getStatus() != CardStatus.ACTIVE) {
             throw new InvalidTransferException("Обе карты должны быть активированы");
         }
-        if (from.getBalance().compareTo(dto.amount()) < 0) {
-            throw new InsufficientFundsException("Недостаточно средств");
-        }
-        from.setBalance(from.getBalance().subtract(dto.amount()));
-        to.setBalance(to.getBalance().add(dto.amount()));
-        cardRepository.save(from);
-        cardRepository.save(to);
-        log.debug("Перевод выполнен");
     }
 
     @Override
+    @Transactional(readOnly = true)
     public Page<CardDto> getUserCards(Long ownerId, CardStatus status, Pageable pageable) {
-        var page = (status == null)
-                ? cardRepository.findByOwnerId(ownerId, pageable)
-                : cardRepository.findByOwnerIdAndStatus(ownerId, status, pageable);
-        return page.map(c -> new CardDto(
-                c.getId(),
-                c.getOwner().getId(),
-                CardMasker.mask(cardCrypto.decrypt(c.getCardNumber())),
-                c.getStatus(),
-                c.getBalance()
-        ));
+        return userCardsCache.get(ownerId, status, pageable, () -> {
+            var page = (status == null)
+                    ? cardRepository.findViewsByOwnerId(ownerId, pageable)
+                    : cardRepository.findViewsByOwnerIdAndStatus(ownerId, status, pageable);
+            return page.map(this::toDto);
+        });
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public String getUserCardsVersion(Long ownerId) {
+        return userCardsCache.version(ownerId);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<CardDto> getUserCardsSlice(Long ownerId, CardStatus status, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_USER_CARDS_PAGE_SIZE));
+        long afterId = IdCursor.afterId(cursor);
+        var limit = Limit.of(pageSize + 1);
+        var cards = (status == null)
+                ? cardRepository.findViewsByOwnerIdAfter(ownerId, afterId, limit)
+                : cardRepository.findViewsByOwnerIdAndStatusAfter(ownerId, status, afterId, limit);
+        var content = cards.stream().limit(pageSize).map(this::toDto).toList();
+        if (cards.size() <= pageSize) {
+            return new CursorPage<>(content, null);
+        }
+        return new CursorPage<>(content, new IdCursor(content.get(pageSize - 1).id()).encode());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPage<CardTransactionDto> getCardTransactions(Long userId, Long cardId, String cursor, int size) {
+        var ownerId = cardRepository.findOwnerIdById(cardId)
+                .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
+        if (!ownerId.equals(userId)) {
+            throw new ForbiddenOperationException("Можно смотреть историю только своих карт");
+        }
+        // запрашиваем на одну запись больше, чтобы без COUNT понять, есть ли следующая страница
+        int pageSize = Math.max(1, Math.min(size, MAX_HISTORY_PAGE_SIZE));
+        var limit = Limit.of(pageSize + 1);
+        List<CardTransactionDto> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = cardTransactionRepository.findLatest(cardId, limit);
+        } else {
+            var after = HistoryCursor.decode(cursor);
+            rows = cardTransactionRepository.findBefore(cardId, after.createdAt(), after.id(), limit);
+        }
+        if (rows.size() <= pageSize) {
+            return new CursorPage<>(rows, null);
+        }
+        var content = rows.subList(0, pageSize);
+        var last = content.get(pageSize - 1);
+        return new CursorPage<>(List.copyOf(content), new HistoryCursor(last.createdAt(), last.id()).encode());
+    }
+
+    /**
+     * Маска по card_last4; расшифровка только для строк, ещё не дозаполненных.
+     */
+    private String maskedNumber(Card card) {
+        if (card.getCardLast4() != null) {
+            return CardMasker.maskLast4(card.getCardLast4());
+        }
+        return CardMasker.mask(cardCrypto.decrypt(card.getCardNumberEnc(), card.getCardNumber()));
+    }
+
+    /**
+     * Состав или статусы карт владельца изменились: сводка и кеш страниц сбрасываются после коммита.
+     */
+    private void ownerCardsChanged(long ownerId) {
+        // сначала окно чтения с основной БД по владельцу, потом сброс сводки
+        userCardsCache.evictAfterCommit(ownerId);
+        events.publishEvent(new CardsChangedEvent(ownerId));
+    }
+
+    private CardDto toDto(CardView card) {
+        String number = card.cardLast4() != null
+                ? CardMasker.maskLast4(card.cardLast4())
+                : CardMasker.mask(cardCrypto.decrypt(card.cardNumberEnc(), card.cardNumber()));
+        return new CardDto(card.id(), card.ownerId(), number, card.status(), card.balance());
+    }
+
+    private Card lockCard(Long cardId) {
+        return cardRepository.findByIdForUpdate(cardId)
+                .orElseThrow(() -> new CardNotFoundException("Карта не найдена"));
+    }
+
+    /**
+     * Позиция в истории операций: (createdAt, id) последней отданной записи,
+     * передаётся клиенту непрозрачной base64url-строкой.
+     */
+    private record HistoryCursor(Instant createdAt, long id) {
+
+        String encode() {
+            long micros = ChronoUnit.MICROS.between(Instant.EPOCH, createdAt);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((micros + ":" + id).getBytes(StandardCharsets.US_ASCII));
+        }
+
+        static HistoryCursor decode(String cursor) {
+            try {
+                var raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+                int sep = raw.indexOf(':');
+                long micros = Long.parseLong(raw.substring(0, sep));
+                return new HistoryCursor(Instant.EPOCH.plus(micros, ChronoUnit.MICROS),
+                        Long.parseLong(raw.substring(sep + 1)));
+            } catch (RuntimeException e) {
+                throw new InvalidCursorException("Некорректный курсор");
+            }
+        }
     }
 }
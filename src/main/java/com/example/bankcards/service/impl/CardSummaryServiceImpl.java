@@ -0,0 +1,69 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.ReadYourWritesWindow;
+import com.example.bankcards.dto.CardSummaryDto;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.service.CardSummaryService;
+import com.example.bankcards.service.CardsChangedEvent;
+import com.example.bankcards.util.Money;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Сводка по картам владельца. Результат кешируется по id владельца и сбрасывается
+ * после коммита транзакции, изменившей его карты ({@link CardsChangedEvent}).
+ * Загрузка идёт через Cache.get: сброс, пришедший во время загрузки, дожидается её
+ * и удаляет только что посчитанное значение, поэтому устаревшая сводка в кеше не остаётся.
+ * Сводка, загружаемая в окне после изменения карт владельца, читается с основной БД
+ * ({@link ReadYourWritesWindow#readOwner}), а не с реплики, которая могла не догнать коммит.
+ */
+@Service
+public class CardSummaryServiceImpl implements CardSummaryService {
+
+    private final CardRepository cardRepository;
+    private final ReadYourWritesWindow readYourWrites;
+    private final Cache<Long, List<CardSummaryDto>> summaries;
+
+    public CardSummaryServiceImpl(CardRepository cardRepository,
+                                  ReadYourWritesWindow readYourWrites,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.card.summary.cache.max-size:10000}") long cacheMaxSize,
+                                  @Value("${app.card.summary.cache.ttl:10m}") Duration cacheTtl) {
+        this.cardRepository = cardRepository;
+        this.readYourWrites = readYourWrites;
+        this.summaries = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, summaries, "card.summary");
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<CardSummaryDto> getSummary(Long ownerId) {
+        return summaries.get(ownerId, id -> readYourWrites.readOwner(id, () -> load(id)));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCardsChanged(CardsChangedEvent event) {
+        summaries.invalidate(event.ownerId());
+    }
+
+    private List<CardSummaryDto> load(Long ownerId) {
+        return cardRepository.summarizeByOwnerId(ownerId).stream()
+                .map(row -> new CardSummaryDto(CardStatus.valueOf(row.getStatus()), row.getCards(),
+                        Money.of(row.getTotal())))
+                .toList();
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Позиция в keyset-списке, упорядоченном по id: id последней отданной записи,
+ * передаётся клиенту непрозрачной base64url-строкой.
+ */
+record IdCursor(long id) {
+
+    /**
+     * Курсор начала списка: null или пустая строка - с самого начала.
+     */
+    static long afterId(String cursor) {
+        return cursor == null || cursor.isBlank() ? 0 : decode(cursor).id();
+    }
+
+    String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    static IdCursor decode(String cursor) {
+        try {
+            return new IdCursor(Long.parseLong(
+                    new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII)));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Некорректный курсор");
+        }
+    }
+}
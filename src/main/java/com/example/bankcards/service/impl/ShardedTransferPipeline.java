@@ -0,0 +1,188 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.GroupTransfer;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Конвейер переводов с групповой фиксацией. Перевод двигает деньги между картами
+ * одного владельца, поэтому очередь (шард) выбирается по id владельца. У каждого шарда
+ * один поток-писатель: он копит переводы не дольше flush-interval и фиксирует их
+ * одной транзакцией через {@link CardService#transferGroup}, так что на группу
+ * приходится один COMMIT (и один fsync журнала) вместо одного на перевод.
+ * Вызывающий поток ждёт, пока его группа не зафиксирована, но не дольше timeout.
+ */
+@Component
+public class ShardedTransferPipeline implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedTransferPipeline.class);
+
+    private final CardService cardService;
+    private final boolean enabled;
+    private final long flushIntervalNanos;
+    private final int maxGroupSize;
+    private final long timeoutMillis;
+    private final List<BlockingQueue<Pending>> queues = new ArrayList<>();
+    private final List<Thread> writers = new ArrayList<>();
+    private final DistributionSummary groupSizes;
+    private volatile boolean running;
+
+    public ShardedTransferPipeline(CardService cardService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.card.transfer.group-commit.enabled:false}") boolean enabled,
+                                   @Value("${app.card.transfer.group-commit.shards:4}") int shards,
+                                   @Value("${app.card.transfer.group-commit.flush-interval:5ms}") Duration flushInterval,
+                                   @Value("${app.card.transfer.group-commit.max-group-size:500}") int maxGroupSize,
+                                   @Value("${app.card.transfer.group-commit.timeout:30s}") Duration timeout) {
+        this.cardService = cardService;
+        this.enabled = enabled;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.maxGroupSize = Math.max(1, maxGroupSize);
+        this.timeoutMillis = timeout.toMillis();
+        this.groupSizes = DistributionSummary.builder("transfer.group.size")
+                .description("Число переводов в одной групповой транзакции")
+                .register(meterRegistry);
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < Math.max(1, shards); i++) {
+            var queue = new LinkedBlockingQueue<Pending>();
+            queues.add(queue);
+            var writer = new Thread(() -> drain(queue), "transfer-shard-" + i);
+            writer.setDaemon(true);
+            writers.add(writer);
+            writer.start();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ставит перевод в очередь шарда и ждёт фиксации его группы. Отказ по самому
+     * переводу (нет средств, чужая карта и т.п.) выбрасывается в вызывающем потоке.
+     * Если за timeout перевод не дошёл до писателя, он снимается с очереди и не выполнится;
+     * если уже дошёл, его исход неизвестен - об этом говорит текст исключения.
+     */
+    public void transfer(Long userId, TransferDto dto) {
+        if (!running) {
+            throw new IllegalStateException("Конвейер переводов остановлен");
+        }
+        var pending = new Pending(new GroupTransfer(userId, dto), new CompletableFuture<>());
+        var queue = queues.get(Math.floorMod(userId.hashCode(), queues.size()));
+        queue.add(pending);
+        try {
+            pending.result().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Групповая транзакция переводов не выполнена", e.getCause());
+        } catch (TimeoutException e) {
+            throw abandoned(queue, pending, "Перевод не зафиксирован за " + timeoutMillis + " мс");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw abandoned(queue, pending, "Ожидание перевода прервано");
+        }
+    }
+
+    private static IllegalStateException abandoned(BlockingQueue<Pending> queue, Pending pending, String reason) {
+        if (queue.remove(pending)) {
+            return new IllegalStateException(reason + ", перевод отменён");
+        }
+        return new IllegalStateException(reason + ", перевод уже выполняется, его исход неизвестен");
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        running = false;
+        for (var writer : writers) {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        var stopped = new IllegalStateException("Конвейер переводов остановлен");
+        for (var queue : queues) {
+            for (Pending p; (p = queue.poll()) != null; ) {
+                p.result().completeExceptionally(stopped);
+            }
+        }
+    }
+
+    private void drain(BlockingQueue<Pending> queue) {
+        var group = new ArrayList<Pending>(maxGroupSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                var first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (group.size() < maxGroupSize) {
+                    long left = deadline - System.nanoTime();
+                    var next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+                flush(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                var stopped = new IllegalStateException("Конвейер переводов остановлен");
+                group.forEach(p -> p.result().completeExceptionally(stopped));
+                return;
+            } catch (Throwable e) {
+                // в том числе Error из transferGroup: поток-писатель шарда должен жить,
+                // иначе его очередь и ждущие запросы повиснут
+                log.error("Сбой потока-писателя конвейера переводов", e);
+                var failed = new IllegalStateException("Групповая транзакция переводов не выполнена", e);
+                group.forEach(p -> p.result().completeExceptionally(failed));
+            } finally {
+                group.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> group) {
+        groupSizes.record(group.size());
+        List<RuntimeException> failures;
+        try {
+            failures = cardService.transferGroup(group.stream().map(Pending::transfer).toList());
+        } catch (RuntimeException e) {
+            // упала вся транзакция: ни один перевод группы не зафиксирован
+            log.warn("Групповая транзакция переводов откатилась: {}", e.getMessage());
+            group.forEach(p -> p.result().completeExceptionally(e));
+            return;
+        }
+        for (int i = 0; i < group.size(); i++) {
+            var failure = failures.get(i);
+            if (failure == null) {
+                group.get(i).result().complete(null);
+            } else {
+                group.get(i).result().completeExceptionally(failure);
+            }
+        }
+    }
+
+    private record Pending(GroupTransfer transfer, CompletableFuture<Void> result) {
+    }
+}
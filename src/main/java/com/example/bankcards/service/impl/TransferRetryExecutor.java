@@ -0,0 +1,76 @@
+package com.example.bankcards.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Повторяет перевод, откатившийся из-за оптимистичной блокировки (конфликт {@code @Version}).
+ * Действие должно само открывать и закрывать транзакцию: повтор внутри уже начатой
+ * транзакции бессмыслен, она помечена на откат.
+ * Пауза между попытками - случайная в пределах экспоненциально растущего окна
+ * (full jitter), чтобы столкнувшиеся переводы не повторялись синхронно.
+ */
+@Component
+public class TransferRetryExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(TransferRetryExecutor.class);
+
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final long maxBackoffMillis;
+    private final Counter retries;
+    private final Counter aborts;
+
+    public TransferRetryExecutor(MeterRegistry meterRegistry,
+                                 @Value("${app.card.transfer.optimistic.max-attempts:5}") int maxAttempts,
+                                 @Value("${app.card.transfer.optimistic.backoff:10ms}") Duration backoff,
+                                 @Value("${app.card.transfer.optimistic.max-backoff:200ms}") Duration maxBackoff) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMillis = backoff.toMillis();
+        this.maxBackoffMillis = maxBackoff.toMillis();
+        this.retries = Counter.builder("transfer.optimistic.retries")
+                .description("Повторы перевода после конфликта версий")
+                .register(meterRegistry);
+        this.aborts = Counter.builder("transfer.optimistic.aborts")
+                .description("Переводы, не прошедшие за отведённое число попыток")
+                .register(meterRegistry);
+    }
+
+    public <T> T execute(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    aborts.increment();
+                    log.debug("Перевод не прошёл за {} попыток", attempt);
+                    throw e;
+                }
+                retries.increment();
+                pause(attempt);
+            }
+        }
+    }
+
+    private void pause(int attempt) {
+        long window = Math.min(maxBackoffMillis, backoffMillis << Math.min(attempt - 1, 20));
+        if (window <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(window + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Повтор перевода прерван", e);
+        }
+    }
+}
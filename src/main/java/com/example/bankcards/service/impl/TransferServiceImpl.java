@@ -0,0 +1,156 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.TransferIdempotencyKey;
+import com.example.bankcards.exception.ExceptionHandlerAdvice;
+import com.example.bankcards.exception.IdempotencyKeyReuseException;
+import com.example.bankcards.exception.InvalidTransferException;
+import com.example.bankcards.repository.TransferIdempotencyKeyRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.TransferOutcome;
+import com.example.bankcards.service.TransferService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+@Service
+public class TransferServiceImpl implements TransferService {
+
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final Logger log = LoggerFactory.getLogger(TransferServiceImpl.class);
+
+    private final CardService cardService;
+    private final TransferRetryExecutor retryExecutor;
+    private final ShardedTransferPipeline pipeline;
+    private final TransferIdempotencyKeyRepository idempotencyKeyRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<TransferIdempotencyKey.PrimaryKey, StoredOutcome> outcomes;
+    private final Duration retention;
+
+    public TransferServiceImpl(CardService cardService,
+                               TransferRetryExecutor retryExecutor,
+                               ShardedTransferPipeline pipeline,
+                               TransferIdempotencyKeyRepository idempotencyKeyRepository,
+                               PlatformTransactionManager transactionManager,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.card.transfer.idempotency.cache.max-size:10000}") long cacheMaxSize,
+                               @Value("${app.card.transfer.idempotency.cache.ttl:10m}") Duration cacheTtl,
+                               @Value("${app.card.transfer.idempotency.retention:24h}") Duration retention) {
+        this.cardService = cardService;
+        this.retryExecutor = retryExecutor;
+        this.pipeline = pipeline;
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.outcomes = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        this.retention = retention;
+        CaffeineCacheMetrics.monitor(meterRegistry, outcomes, "transfer.idempotency");
+    }
+
+    @Override
+    public TransferOutcome transfer(Long userId, String idempotencyKey, TransferDto dto) {
+        if (idempotencyKey == null) {
+            if (pipeline.isEnabled()) {
+                pipeline.transfer(userId, dto);
+                return TransferOutcome.ok();
+            }
+            return retryExecutor.execute(() -> {
+                cardService.transfer(userId, dto);
+                return TransferOutcome.ok();
+            });
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidTransferException("Некорректный Idempotency-Key");
+        }
+        var id = new TransferIdempotencyKey.PrimaryKey(userId, idempotencyKey);
+        String requestHash = requestHash(dto);
+        var cached = outcomes.getIfPresent(id);
+        if (cached != null) {
+            return replay(cached, requestHash);
+        }
+
+        // ключ занимается в той же транзакции, что и перевод, поэтому такие запросы
+        // идут мимо конвейера групповой фиксации. Повтор, пришедший
+        // параллельно, ждёт на вставке ключа и получает уже готовый результат
+        TransferOutcome outcome;
+        try {
+            outcome = retryExecutor.execute(() -> transactionTemplate.execute(tx -> {
+                if (idempotencyKeyRepository.reserve(userId, idempotencyKey, requestHash,
+                        200, null, Instant.now()) == 0) {
+                    return null;
+                }
+                cardService.transfer(userId, dto);
+                return TransferOutcome.ok();
+            }));
+        } catch (RuntimeException ex) {
+            var status = ExceptionHandlerAdvice.statusOf(ex);
+            if (status == null) {
+                // сбой не бизнесовый (в том числе исчерпаны повторы при конфликте версий):
+                // ключ не занят, клиент может повторить запрос
+                throw ex;
+            }
+            var failure = new TransferOutcome(status.value(), ex.getMessage(), false);
+            Integer reserved = transactionTemplate.execute(tx -> idempotencyKeyRepository.reserve(
+                    userId, idempotencyKey, requestHash, failure.status(), failure.body(), Instant.now()));
+            outcome = reserved != null && reserved == 1 ? failure : null;
+        }
+
+        if (outcome == null) {
+            // читаем в пишущей транзакции: ключ только что занят и на реплику мог ещё не доехать
+            var stored = transactionTemplate.execute(tx -> idempotencyKeyRepository.findById(id))
+                    .map(k -> new StoredOutcome(k.getRequestHash(),
+                            new TransferOutcome(k.getStatus(), k.getResponseBody(), false)))
+                    .orElseThrow(() -> new IllegalStateException("Ключ идемпотентности пропал: " + idempotencyKey));
+            outcomes.put(id, stored);
+            return replay(stored, requestHash);
+        }
+        outcomes.put(id, new StoredOutcome(requestHash, outcome));
+        return outcome;
+    }
+
+    @Scheduled(fixedDelayString = "${app.card.transfer.idempotency.purge-interval:PT1H}")
+    public void purgeExpiredKeys() {
+        Integer deleted = transactionTemplate.execute(tx ->
+                idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(retention)));
+        log.debug("Удалено просроченных ключей идемпотентности: {}", deleted);
+    }
+
+    private static TransferOutcome replay(StoredOutcome stored, String requestHash) {
+        if (!stored.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyReuseException("Ключ идемпотентности уже использован для другого перевода");
+        }
+        return stored.outcome().asReplay();
+    }
+
+    private static String requestHash(TransferDto dto) {
+        String amount = dto.amount() == null ? "" : dto.amount().stripTrailingZeros().toPlainString();
+        String canonical = dto.fromCardId() + ":" + dto.toCardId() + ":" + amount;
+        try {
+            var digest = MessageDigest.getInstance("SHA-256").digest(canonical.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    private record StoredOutcome(String requestHash, TransferOutcome outcome) {
+    }
+}
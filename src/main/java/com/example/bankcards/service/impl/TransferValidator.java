@@ -0,0 +1,54 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.exception.InvalidTransferException;
+import com.example.bankcards.util.Money;
+
+import java.math.BigDecimal;
+
+/**
+ * Проверки перевода, не требующие БД. Общие для синхронного перевода, пакета,
+ * групповой фиксации и асинхронной подачи: отказ всегда 400 до любой записи.
+ */
+final class TransferValidator {
+
+    // cards.balance и async_transfers.amount - NUMERIC(15,2)
+    static final BigDecimal MAX_AMOUNT = new BigDecimal("9999999999999.99");
+    static final Money MAX_BALANCE = Money.of(MAX_AMOUNT);
+
+    private TransferValidator() {
+    }
+
+    /**
+     * @param item суффикс сообщения с номером перевода в пакете, для одиночного - пустая строка
+     */
+    static void check(TransferDto dto, String item) {
+        if (dto == null || dto.fromCardId() == null || dto.toCardId() == null || dto.amount() == null) {
+            throw new InvalidTransferException("Не указаны карты или сумма перевода" + item);
+        }
+        if (dto.fromCardId().equals(dto.toCardId())) {
+            throw new InvalidTransferException("Карты совпадают" + item);
+        }
+        if (dto.amount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new InvalidTransferException("Сумма должна быть больше 0" + item);
+        }
+        if (dto.amount().stripTrailingZeros().scale() > 2) {
+            throw new InvalidTransferException("Сумма указывается с точностью до копейки" + item);
+        }
+        // как и баланс карты: иначе Money.of бросит ArithmeticException
+        if (dto.amount().compareTo(MAX_AMOUNT) > 0) {
+            throw new InvalidTransferException("Сумма не может превышать " + MAX_AMOUNT.toPlainString() + item);
+        }
+    }
+
+    /**
+     * Зачисление не должно вывести баланс получателя за NUMERIC(15,2): иначе
+     * переполнение в БД при записи дошло бы до клиента как 500.
+     */
+    static void checkCredit(Money balance, Money amount, String item) {
+        if (MAX_BALANCE.minus(balance).isLessThan(amount)) {
+            throw new InvalidTransferException("Баланс карты-получателя не может превышать "
+                    + MAX_AMOUNT.toPlainString() + item);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.ReadYourWritesWindow;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Кеш страниц getUserCards по (владелец, статус, страница). Сброс по владельцу -
+ * новое поколение: ключ содержит поколение, прочитанное до запроса в БД, поэтому
+ * страница, посчитанная до коммита записи, ложится под старое поколение и больше
+ * не читается, а сами старые записи вытесняются по размеру и TTL. Поколения выдаются
+ * из общего счётчика, так что вытесненное поколение владельца не совпадёт с прежним.
+ * Поколение живёт не дольше TTL: запись, закоммиченная на другом узле или не успевшая
+ * на реплику, видна не позже чем через TTL. Оно же - версия карт владельца для ETag
+ * и ведётся и при выключенном кеше страниц.
+ * Сброс открывает окно чтения с основной БД по владельцу ({@link ReadYourWritesWindow}):
+ * страница, загруженная сразу после сброса, не возьмётся с отстающей реплики.
+ * Метрики - кеш "card.user-cards" (попадания, промахи, вытеснения).
+ */
+@Component
+public class UserCardsCache {
+
+    private final ReadYourWritesWindow readYourWrites;
+    private final boolean enabled;
+    // отличает поколения этого экземпляра от выданных до перезапуска или другим узлом
+    private final String instance = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private final AtomicLong generations = new AtomicLong();
+    private final Cache<Long, Long> ownerGenerations;
+    private final Cache<Key, Page<CardDto>> pages;
+
+    public UserCardsCache(MeterRegistry meterRegistry,
+                          ReadYourWritesWindow readYourWrites,
+                          @Value("${app.card.cache.enabled:true}") boolean enabled,
+                          @Value("${app.card.cache.max-size:10000}") long maxSize,
+                          @Value("${app.card.cache.ttl:1m}") Duration ttl) {
+        this.readYourWrites = readYourWrites;
+        this.enabled = enabled;
+        this.ownerGenerations = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.pages = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, pages, "card.user-cards");
+    }
+
+    public Page<CardDto> get(long ownerId, CardStatus status, Pageable pageable, Supplier<Page<CardDto>> loader) {
+        if (!enabled) {
+            return readYourWrites.readOwner(ownerId, loader);
+        }
+        return pages.get(new Key(ownerId, generation(ownerId), status, pageable),
+                key -> readYourWrites.readOwner(ownerId, loader));
+    }
+
+    /**
+     * Версия карт владельца: меняется после коммита любого их изменения, при перезапуске
+     * и не реже чем раз в TTL. Читается без обращения к БД.
+     */
+    public String version(long ownerId) {
+        return instance + "-" + generation(ownerId);
+    }
+
+    /**
+     * Сбрасывает страницы владельца после коммита текущей транзакции (без транзакции - сразу).
+     * Коммит, а с ним и сброс, завершается до возврата из метода сервиса, поэтому
+     * следующий запрос после записи уже не увидит старых балансов.
+     */
+    public void evictAfterCommit(long ownerId) {
+        readYourWrites.recordOwnerWrite(ownerId);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(ownerId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // окно считается от коммита, а не от начала транзакции
+                readYourWrites.recordOwnerWrite(ownerId);
+                evict(ownerId);
+            }
+        });
+    }
+
+    private long generation(long ownerId) {
+        return ownerGenerations.get(ownerId, id -> generations.incrementAndGet());
+    }
+
+    private void evict(long ownerId) {
+        ownerGenerations.put(ownerId, generations.incrementAndGet());
+    }
+
+    private record Key(long ownerId, long generation, CardStatus status, Pageable pageable) {
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.bankcards.service.impl;
 
 import com.example.bankcards.dto.CreateUserDto;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.UserDto;
 import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.Role;
 import com.example.bankcards.exception.InvalidUserDataException;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.exception.UsernameAlreadyExistsException;
@@ -10,6 +12,7 @@ import com.example.bankcards.repository.UserRepository;
 import com.example.bankcards.service.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -23,6 +26,7 @@ public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private static final int MAX_PAGE_SIZE = 1000;
     private static final Logger log = LoggerFactory.getLogger(UserServiceImpl.class);
 
     public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder) {
@@ -31,15 +35,24 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public List<UserDto> getAllUsers() {
-        log.debug("поиск всех пользователей");
-        return userRepository.findAll()
-                .stream()
-                .map(u -> new UserDto(u.getId(), u.getUsername(), u.getRole()))
-                .toList();
+    @Transactional(readOnly = true)
+    public CursorPage<UserDto> getUsers(String cursor, int size, Role role) {
+        log.debug("поиск пользователей, роль: {}", role);
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        long afterId = IdCursor.afterId(cursor);
+        var limit = Limit.of(pageSize + 1);
+        var users = (role == null)
+                ? userRepository.findPageAfter(afterId, limit)
+                : userRepository.findPageByRoleAfter(role, afterId, limit);
+        if (users.size() <= pageSize) {
+            return new CursorPage<>(users, null);
+        }
+        var content = List.copyOf(users.subList(0, pageSize));
+        return new CursorPage<>(content, new IdCursor(content.get(pageSize - 1).id()).encode());
     }
 
     @Override
+    @Transactional(readOnly = true)
     public UserDto getUserById(long id) {
         log.debug("поиск пользователя с id: {}", id);
         var u = userRepository.findById(id)
@@ -0,0 +1,50 @@
+package com.example.bankcards.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * Слепой индекс номера карты: HMAC-SHA256 от цифр номера на отдельном ключе.
+ * Одинаковый номер всегда даёт одинаковое значение, поэтому карту можно найти
+ * и дубль отсечь одним обращением к индексу, не расшифровывая таблицу.
+ */
+@Component
+public class CardBlindIndex {
+
+    private static final String ALG = "HmacSHA256";
+
+    private final Mac prototype;
+
+    public CardBlindIndex(@Value("${app.card.blind-index.key}") String b64key) {
+        try {
+            prototype = Mac.getInstance(ALG);
+            prototype.init(new SecretKeySpec(Base64.getDecoder().decode(b64key), ALG));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 недоступен", e);
+        }
+    }
+
+    /**
+     * Hex HMAC от цифр номера: пробелы и прочие нецифровые символы пропускаются.
+     */
+    public String of(CharSequence cardNumber) {
+        try {
+            var mac = (Mac) prototype.clone();
+            for (int i = 0; i < cardNumber.length(); i++) {
+                char c = cardNumber.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    mac.update((byte) c);
+                }
+            }
+            return HexFormat.of().formatHex(mac.doFinal());
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("HMAC-SHA256 недоступен", e);
+        }
+    }
+}
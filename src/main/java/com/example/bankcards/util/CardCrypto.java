@@ -1,14 +1,36 @@
 package com.example.bankcards.util;
 
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.Cipher;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * AES-GCM для номеров карт. Основной формат хранения - двоичный:
+ * [2][id ключа][iv][шифротекст+тег]. Прежние форматы - двоичный [1][iv][ct] и текстовый
+ * "base64(iv):base64(ct)" - читаются, оба зашифрованы ключом 0.
+ * Связка ключей (app.card.crypto.keyring, "id:base64,..." с id 0..255; app.card.crypto.key -
+ * краткая запись ключа 0) позволяет сменить ключ без простоя: новые значения шифруются
+ * активным ключом (app.card.crypto.active-key-id), старые перешифровывает CardReencryptionJob.
+ * Любой ключ, включая 0, можно убрать из связки, когда им больше ничего не зашифровано.
+ * В конвертном режиме (app.card.crypto.envelope.enabled) новые значения пишутся как
+ * [3][длина][завёрнутый ключ данных][iv][шифротекст+тег], ключи данных выдаёт {@link DataKeyCache}.
+ * Cipher, генератор IV и буферы берутся из пула: Cipher.getInstance на каждый вызов
+ * дорог, а общий SecureRandom - точка конкуренции потоков. Пул, а не ThreadLocal,
+ * чтобы повторное использование работало и на виртуальных потоках.
+ */
 @Component
 public class CardCrypto {
 
@@ -16,39 +38,367 @@ public class CardCrypto {
     private static final String TRANS = "AES/GCM/NoPadding";
     private static final int GCM_TAG_BITS = 128;
     private static final int IV_LEN = 12;
+    private static final int MAX_IDLE_WORKERS = 64;
+    private static final byte BINARY_V1 = 1;
+    private static final byte BINARY_V2 = 2;
+    private static final byte BINARY_V3 = 3;
+    private static final int BINARY_HEADER = 1 + IV_LEN;
+    private static final int BINARY_V2_HEADER = 2 + IV_LEN;
+    private static final int MAX_KEY_ID = 255;
 
+    private static final byte[] BASE64_ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        for (int i = 0; i < BASE64_ALPHABET.length; i++) {
+            BASE64_VALUES[BASE64_ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    // ключ 0 прежних форматов; null, если он уже выведен из связки
     private final SecretKeySpec key;
-    private final SecureRandom secureRandom = new SecureRandom();
+    private final SecretKeySpec[] keyring = new SecretKeySpec[MAX_KEY_ID + 1];
+    private final int activeKeyId;
+    private final DataKeyCache envelope;
+    private final Queue<Worker> idle = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    public CardCrypto(String b64key) {
+        this(b64key, "", 0, (DataKeyCache) null);
+    }
+
+    public CardCrypto(String b64key, String keyring, int activeKeyId) {
+        this(b64key, keyring, activeKeyId, (DataKeyCache) null);
+    }
+
+    @Autowired
+    public CardCrypto(@Value("${app.card.crypto.key:}") String b64key,
+                      @Value("${app.card.crypto.keyring:}") String keyring,
+                      @Value("${app.card.crypto.active-key-id:0}") int activeKeyId,
+                      ObjectProvider<DataKeyCache> envelope) {
+        this(b64key, keyring, activeKeyId, envelope.getIfAvailable());
+    }
+
+    public CardCrypto(String b64key, String keyring, int activeKeyId, DataKeyCache envelope) {
+        this.envelope = envelope;
+        if (b64key != null && !b64key.isBlank()) {
+            this.keyring[0] = new SecretKeySpec(Base64.getDecoder().decode(b64key), ALG);
+        }
+        for (String entry : keyring.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int sep = entry.indexOf(':');
+            int id = sep < 0 ? -1 : Integer.parseInt(entry.substring(0, sep).trim());
+            if (id < 0 || id > MAX_KEY_ID || this.keyring[id] != null) {
+                throw new IllegalArgumentException("Некорректная запись в app.card.crypto.keyring: " + entry.substring(0, Math.max(sep, 0)));
+            }
+            this.keyring[id] = new SecretKeySpec(Base64.getDecoder().decode(entry.substring(sep + 1).trim()), ALG);
+        }
+        if (activeKeyId < 0 || activeKeyId > MAX_KEY_ID || this.keyring[activeKeyId] == null) {
+            throw new IllegalArgumentException("Активный ключ " + activeKeyId + " отсутствует в связке");
+        }
+        this.key = this.keyring[0];
+        this.activeKeyId = activeKeyId;
+    }
+
+    public int activeKeyId() {
+        return activeKeyId;
+    }
 
-    public CardCrypto(@Value("${app.card.crypto.key}") String b64key) {
-        byte[] k = Base64.getDecoder().decode(b64key);
-        this.key = new SecretKeySpec(k, ALG);
+    /**
+     * Новые значения пишутся в конвертном формате.
+     */
+    public boolean writesEnvelope() {
+        return envelope != null;
+    }
+
+    /**
+     * Id ключа связки, которым зашифровано значение; текстовый формат и двоичный v1 - ключ 0.
+     * Для конвертного формата не определён и равен 0.
+     */
+    public static int keyIdOf(byte[] binary) {
+        return binary != null && binary.length > 1 && binary[0] == BINARY_V2 ? binary[1] & 0xff : 0;
     }
 
     public String encrypt(String plain) {
+        var worker = acquire();
         try {
-            byte[] iv = new byte[IV_LEN];
-            secureRandom.nextBytes(iv);
-            Cipher c = Cipher.getInstance(TRANS);
-            c.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
-            byte[] ct = c.doFinal(plain.getBytes());
-            return Base64.getEncoder().encodeToString(iv) + ":" +
-                    Base64.getEncoder().encodeToString(ct);
-        } catch (Exception e) {
+            byte[] iv = worker.iv;
+            worker.random.nextBytes(iv);
+            worker.cipher.init(Cipher.ENCRYPT_MODE, legacyKey(), new GCMParameterSpec(GCM_TAG_BITS, iv));
+            byte[] ct = worker.cipher.doFinal(plain.getBytes(StandardCharsets.UTF_8));
+            int ivChars = base64Length(IV_LEN);
+            byte[] out = new byte[ivChars + 1 + base64Length(ct.length)];
+            encodeBase64(iv, IV_LEN, out, 0);
+            out[ivChars] = ':';
+            encodeBase64(ct, ct.length, out, ivChars + 1);
+            return new String(out, StandardCharsets.ISO_8859_1);
+        } catch (GeneralSecurityException | RuntimeException e) {
             throw new IllegalStateException("Card encrypt failed", e);
+        } finally {
+            release(worker);
         }
     }
 
+    /**
+     * Шифрует в двоичный формат: активным ключом связки - [2][id ключа][iv][шифротекст+тег],
+     * в конвертном режиме - текущим ключом данных, [3][длина][завёрнутый ключ][iv][шифротекст+тег].
+     */
+    public byte[] encryptToBytes(String plain) {
+        var worker = acquire();
+        try {
+            byte[] iv = worker.iv;
+            worker.random.nextBytes(iv);
+            byte[] pt = plain.getBytes(StandardCharsets.UTF_8);
+            byte[] out;
+            int header;
+            if (envelope != null) {
+                var dataKey = envelope.current();
+                byte[] wrapped = dataKey.wrapped();
+                worker.cipher.init(Cipher.ENCRYPT_MODE, dataKey.key(), new GCMParameterSpec(GCM_TAG_BITS, iv));
+                header = 2 + wrapped.length + IV_LEN;
+                out = new byte[header + worker.cipher.getOutputSize(pt.length)];
+                out[0] = BINARY_V3;
+                out[1] = (byte) wrapped.length;
+                System.arraycopy(wrapped, 0, out, 2, wrapped.length);
+            } else {
+                worker.cipher.init(Cipher.ENCRYPT_MODE, keyring[activeKeyId], new GCMParameterSpec(GCM_TAG_BITS, iv));
+                header = BINARY_V2_HEADER;
+                out = new byte[header + worker.cipher.getOutputSize(pt.length)];
+                out[0] = BINARY_V2;
+                out[1] = (byte) activeKeyId;
+            }
+            System.arraycopy(iv, 0, out, header - IV_LEN, IV_LEN);
+            worker.cipher.doFinal(pt, 0, pt.length, out, header);
+            return out;
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new IllegalStateException("Card encrypt failed", e);
+        } finally {
+            release(worker);
+        }
+    }
+
+    /**
+     * Расшифровка двоичного формата: iv и шифротекст берутся из массива по смещениям, без разбора.
+     */
+    public String decrypt(byte[] stored) {
+        var worker = acquire();
+        try {
+            int header;
+            SecretKeySpec k;
+            if (stored.length > 2 && stored[0] == BINARY_V3) {
+                int wrappedLen = stored[1] & 0xff;
+                header = 2 + wrappedLen + IV_LEN;
+                if (envelope == null || stored.length <= header) {
+                    throw new IllegalArgumentException("Конвертный формат без провайдера ключей или повреждён");
+                }
+                k = envelope.unwrap(stored, 2, wrappedLen);
+            } else if (stored.length > BINARY_V2_HEADER && stored[0] == BINARY_V2) {
+                header = BINARY_V2_HEADER;
+                k = keyring[stored[1] & 0xff];
+                if (k == null) {
+                    throw new IllegalArgumentException("Ключ " + (stored[1] & 0xff) + " отсутствует в связке");
+                }
+            } else if (stored.length > BINARY_HEADER && stored[0] == BINARY_V1) {
+                header = BINARY_HEADER;
+                k = legacyKey();
+            } else {
+                throw new IllegalArgumentException("Неизвестная версия формата");
+            }
+            worker.cipher.init(Cipher.DECRYPT_MODE, k, new GCMParameterSpec(GCM_TAG_BITS, stored, header - IV_LEN, IV_LEN));
+            byte[] out = worker.output(stored.length);
+            int n = worker.cipher.doFinal(stored, header, stored.length - header, out, 0);
+            return new String(out, 0, n, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            throw new IllegalStateException("Card decrypt failed", e);
+        } finally {
+            release(worker);
+        }
+    }
+
+    /**
+     * Номер карты на время перехода: двоичный столбец, если он заполнен, иначе текстовый.
+     */
+    public String decrypt(byte[] binary, String text) {
+        return binary != null ? decrypt(binary) : decrypt(text);
+    }
+
+    /**
+     * Переупаковывает текстовое значение в двоичный формат v1 без расшифровки:
+     * ключ, iv и шифротекст те же, меняется только представление.
+     */
+    public static byte[] toBinary(String stored) {
+        int sep = stored.indexOf(':');
+        if (sep < 0) {
+            throw new IllegalArgumentException("Нет разделителя iv:ct");
+        }
+        byte[] buf = new byte[BINARY_HEADER + stored.length()];
+        buf[0] = BINARY_V1;
+        int ivLen = decodeBase64(stored, 0, sep, buf, 1);
+        if (ivLen != IV_LEN) {
+            throw new IllegalArgumentException("Неверная длина iv");
+        }
+        int ctLen = decodeBase64(stored, sep + 1, stored.length(), buf, BINARY_HEADER);
+        return Arrays.copyOf(buf, BINARY_HEADER + ctLen);
+    }
+
     public String decrypt(String stored) {
+        var worker = acquire();
         try {
-            String[] parts = stored.split(":");
-            byte[] iv = Base64.getDecoder().decode(parts[0]);
-            byte[] ct = Base64.getDecoder().decode(parts[1]);
-            Cipher c = Cipher.getInstance(TRANS);
-            c.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_BITS, iv));
-            return new String(c.doFinal(ct));
-        } catch (Exception e) {
+            int sep = stored.indexOf(':');
+            if (sep < 0) {
+                throw new IllegalArgumentException("Нет разделителя iv:ct");
+            }
+            byte[] buf = worker.buffer(stored.length());
+            int ivLen = decodeBase64(stored, 0, sep, buf, 0);
+            int ctLen = decodeBase64(stored, sep + 1, stored.length(), buf, ivLen);
+            worker.cipher.init(Cipher.DECRYPT_MODE, legacyKey(), new GCMParameterSpec(GCM_TAG_BITS, buf, 0, ivLen));
+            byte[] out = worker.output(ctLen);
+            int n = worker.cipher.doFinal(buf, ivLen, ctLen, out, 0);
+            return new String(out, 0, n, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | RuntimeException e) {
             throw new IllegalStateException("Card decrypt failed", e);
+        } finally {
+            release(worker);
+        }
+    }
+
+    private SecretKeySpec legacyKey() {
+        if (key == null) {
+            throw new IllegalArgumentException("Ключ 0 отсутствует в связке");
+        }
+        return key;
+    }
+
+    private Worker acquire() {
+        var worker = idle.poll();
+        if (worker == null) {
+            return new Worker();
+        }
+        idleCount.decrementAndGet();
+        return worker;
+    }
+
+    private void release(Worker worker) {
+        worker.wipe();
+        if (idleCount.incrementAndGet() <= MAX_IDLE_WORKERS) {
+            idle.offer(worker);
+        } else {
+            idleCount.decrementAndGet();
+        }
+    }
+
+    private static int base64Length(int bytes) {
+        return (bytes + 2) / 3 * 4;
+    }
+
+    private static void encodeBase64(byte[] src, int len, byte[] dst, int pos) {
+        int i = 0;
+        for (; i + 3 <= len; i += 3) {
+            int bits = (src[i] & 0xff) << 16 | (src[i + 1] & 0xff) << 8 | (src[i + 2] & 0xff);
+            dst[pos++] = BASE64_ALPHABET[bits >>> 18];
+            dst[pos++] = BASE64_ALPHABET[bits >>> 12 & 0x3f];
+            dst[pos++] = BASE64_ALPHABET[bits >>> 6 & 0x3f];
+            dst[pos++] = BASE64_ALPHABET[bits & 0x3f];
+        }
+        int rest = len - i;
+        if (rest > 0) {
+            int bits = (src[i] & 0xff) << 16 | (rest == 2 ? (src[i + 1] & 0xff) << 8 : 0);
+            dst[pos++] = BASE64_ALPHABET[bits >>> 18];
+            dst[pos++] = BASE64_ALPHABET[bits >>> 12 & 0x3f];
+            dst[pos++] = rest == 2 ? BASE64_ALPHABET[bits >>> 6 & 0x3f] : (byte) '=';
+            dst[pos] = '=';
+        }
+    }
+
+    /**
+     * Декодирует base64 из символов s[from, to) в dst начиная с pos, без промежуточных строк.
+     * Возвращает число записанных байт.
+     */
+    private static int decodeBase64(String s, int from, int to, byte[] dst, int pos) {
+        while (to > from && s.charAt(to - 1) == '=') {
+            to--;
+        }
+        int start = pos;
+        int bits = 0;
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            char ch = s.charAt(i);
+            int v = ch < 128 ? BASE64_VALUES[ch] : -1;
+            if (v < 0) {
+                throw new IllegalArgumentException("Недопустимый символ base64");
+            }
+            bits = bits << 6 | v;
+            if (++count == 4) {
+                dst[pos++] = (byte) (bits >>> 16);
+                dst[pos++] = (byte) (bits >>> 8);
+                dst[pos++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if (count == 1) {
+            throw new IllegalArgumentException("Обрезанный base64");
+        }
+        if (count == 2) {
+            dst[pos++] = (byte) (bits >>> 4);
+        } else if (count == 3) {
+            dst[pos++] = (byte) (bits >>> 10);
+            dst[pos++] = (byte) (bits >>> 2);
+        }
+        return pos - start;
+    }
+
+    /**
+     * Всё, что нужно одному вызову: Cipher, свой генератор IV и буферы.
+     * Одновременно принадлежит одному потоку.
+     */
+    private static final class Worker {
+
+        final Cipher cipher;
+        final SecureRandom random = new SecureRandom();
+        final byte[] iv = new byte[IV_LEN];
+        private byte[] buffer = new byte[64];
+        private byte[] output = new byte[64];
+        private int bufferUsed;
+        private int outputUsed;
+
+        Worker() {
+            try {
+                cipher = Cipher.getInstance(TRANS);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES/GCM недоступен", e);
+            }
+        }
+
+        byte[] buffer(int minLength) {
+            if (buffer.length < minLength) {
+                buffer = new byte[minLength];
+            }
+            bufferUsed = Math.max(bufferUsed, minLength);
+            return buffer;
+        }
+
+        byte[] output(int minLength) {
+            if (output.length < minLength) {
+                output = new byte[minLength];
+            }
+            outputUsed = Math.max(outputUsed, minLength);
+            return output;
+        }
+
+        /**
+         * Затирает использованную часть буферов: в output остаётся расшифрованный номер,
+         * а простаивающий в пуле Worker живёт долго.
+         */
+        void wipe() {
+            Arrays.fill(output, 0, outputUsed, (byte) 0);
+            Arrays.fill(buffer, 0, bufferUsed, (byte) 0);
+            outputUsed = 0;
+            bufferUsed = 0;
         }
     }
 }
@@ -1,18 +1,50 @@
 package com.example.bankcards.util;
 
+/**
+ * Маска номера карты. Цифры ищутся одним проходом с конца, без регулярных выражений
+ * и промежуточных строк: выделяется только результат.
+ */
 public final class CardMasker {
 
+    private static final String MASK_PREFIX = "**** **** **** ";
+
     private CardMasker() {}
 
-    public static String mask(String cardNumber) {
+    public static String mask(CharSequence cardNumber) {
         if (cardNumber == null) {
             return null;
         }
-        String design = cardNumber.replaceAll("\\D", "");
-        if (design.length() < 4) {
-            return "****";
+        char[] out = new char[MASK_PREFIX.length() + 4];
+        MASK_PREFIX.getChars(0, MASK_PREFIX.length(), out, 0);
+        return fillLast4(cardNumber, out, MASK_PREFIX.length()) ? new String(out) : "****";
+    }
+
+    /**
+     * Маска по сохранённым последним четырём цифрам, без расшифровки номера.
+     */
+    public static String maskLast4(String last4) {
+        return last4 == null ? null : MASK_PREFIX + last4;
+    }
+
+    /**
+     * Последние четыре цифры номера или null, если цифр меньше четырёх.
+     */
+    public static String last4(CharSequence cardNumber) {
+        char[] out = new char[4];
+        return fillLast4(cardNumber, out, 0) ? new String(out) : null;
+    }
+
+    /**
+     * Пишет последние четыре цифры в out[from, from + 4); false, если цифр меньше четырёх.
+     */
+    private static boolean fillLast4(CharSequence cardNumber, char[] out, int from) {
+        int pos = from + 4;
+        for (int i = cardNumber.length() - 1; i >= 0 && pos > from; i--) {
+            char c = cardNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                out[--pos] = c;
+            }
         }
-        String last4 = design.substring(design.length() - 4);
-        return "**** **** **** " + last4;
+        return pos == from;
     }
 }
@@ -0,0 +1,88 @@
+package com.example.bankcards.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Ключи данных конвертного шифрования. Для записи один ключ данных используется
+ * в течение rotation, затем создаётся новый и заворачивается через {@link KeyProvider}.
+ * Развёрнутые ключи лежат в кэше, ограниченном по размеру и времени простоя, так что
+ * обращение к провайдеру нужно только при первом чтении ключа. Метрики: кэш
+ * "card.data-keys" (попадания/промахи) и таймер "card.data-key.unwrap".
+ */
+public class DataKeyCache {
+
+    public record DataKey(SecretKeySpec key, byte[] wrapped) {
+    }
+
+    private final KeyProvider keyProvider;
+    private final long rotationNanos;
+    private final Cache<ByteBuffer, SecretKeySpec> unwrapped;
+    private final Timer unwrapLatency;
+    private final SecureRandom random = new SecureRandom();
+    private volatile DataKey current;
+    private volatile long currentExpiresAt;
+
+    public DataKeyCache(KeyProvider keyProvider, MeterRegistry meterRegistry,
+                        Duration rotation, long maxSize, Duration ttl) {
+        this.keyProvider = keyProvider;
+        this.rotationNanos = rotation.toNanos();
+        this.unwrapped = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        this.unwrapLatency = Timer.builder("card.data-key.unwrap")
+                .description("Разворачивание ключа данных провайдером мастер-ключа")
+                .register(meterRegistry);
+        CaffeineCacheMetrics.monitor(meterRegistry, unwrapped, "card.data-keys");
+    }
+
+    /**
+     * Ключ данных для шифрования новых значений.
+     */
+    public DataKey current() {
+        var key = current;
+        if (key != null && System.nanoTime() - currentExpiresAt < 0) {
+            return key;
+        }
+        synchronized (this) {
+            if (current == null || System.nanoTime() - currentExpiresAt >= 0) {
+                byte[] raw = new byte[32];
+                random.nextBytes(raw);
+                var fresh = new DataKey(new SecretKeySpec(raw, "AES"), keyProvider.wrap(raw));
+                unwrapped.put(ByteBuffer.wrap(fresh.wrapped()), fresh.key());
+                currentExpiresAt = System.nanoTime() + rotationNanos;
+                current = fresh;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Развёрнутый ключ по завёрнутому wrapped[offset, offset + length). Поиск в кэше
+     * идёт без копирования; копия делается только при промахе, для ключа кэша.
+     */
+    public SecretKeySpec unwrap(byte[] wrapped, int offset, int length) {
+        var view = ByteBuffer.wrap(wrapped, offset, length).slice();
+        var key = unwrapped.getIfPresent(view);
+        if (key != null) {
+            return key;
+        }
+        // промах уже учтён getIfPresent, поэтому put, а не get с загрузкой. Параллельный
+        // промах по тому же ключу развернёт его ещё раз - результат тот же
+        byte[] copy = Arrays.copyOfRange(wrapped, offset, offset + length);
+        key = unwrapLatency.record(() -> new SecretKeySpec(keyProvider.unwrap(copy), "AES"));
+        unwrapped.put(ByteBuffer.wrap(copy), key);
+        return key;
+    }
+}
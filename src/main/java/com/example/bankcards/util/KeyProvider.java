@@ -0,0 +1,13 @@
+package com.example.bankcards.util;
+
+/**
+ * Сервис мастер-ключа для конвертного шифрования: заворачивает и разворачивает
+ * ключи данных. Мастер-ключ из него не выходит; реализация для внешнего KMS
+ * ходит в него по сети, поэтому развёрнутые ключи кэширует {@link DataKeyCache}.
+ */
+public interface KeyProvider {
+
+    byte[] wrap(byte[] dataKey);
+
+    byte[] unwrap(byte[] wrappedKey);
+}
@@ -0,0 +1,70 @@
+package com.example.bankcards.util;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Локальная замена KMS для разработки и тестов: мастер-ключ AES-256 в файле (base64).
+ * Если файла нет, ключ создаётся. Завёрнутый ключ - [iv][шифротекст+тег] на мастер-ключе.
+ */
+public class LocalFileKeyProvider implements KeyProvider {
+
+    private static final String TRANS = "AES/GCM/NoPadding";
+    private static final int IV_LEN = 12;
+
+    private final SecretKeySpec masterKey;
+    private final SecureRandom random = new SecureRandom();
+
+    public LocalFileKeyProvider(Path file) {
+        try {
+            if (!Files.exists(file)) {
+                byte[] generated = new byte[32];
+                random.nextBytes(generated);
+                if (file.toAbsolutePath().getParent() != null) {
+                    Files.createDirectories(file.toAbsolutePath().getParent());
+                }
+                Files.writeString(file, Base64.getEncoder().encodeToString(generated), StandardCharsets.US_ASCII);
+            }
+            byte[] key = Base64.getDecoder().decode(Files.readString(file, StandardCharsets.US_ASCII).trim());
+            this.masterKey = new SecretKeySpec(key, "AES");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать мастер-ключ " + file, e);
+        }
+    }
+
+    @Override
+    public byte[] wrap(byte[] dataKey) {
+        try {
+            byte[] iv = new byte[IV_LEN];
+            random.nextBytes(iv);
+            var cipher = Cipher.getInstance(TRANS);
+            cipher.init(Cipher.ENCRYPT_MODE, masterKey, new GCMParameterSpec(128, iv));
+            byte[] out = Arrays.copyOf(iv, IV_LEN + cipher.getOutputSize(dataKey.length));
+            cipher.doFinal(dataKey, 0, dataKey.length, out, IV_LEN);
+            return out;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось завернуть ключ данных", e);
+        }
+    }
+
+    @Override
+    public byte[] unwrap(byte[] wrappedKey) {
+        try {
+            var cipher = Cipher.getInstance(TRANS);
+            cipher.init(Cipher.DECRYPT_MODE, masterKey, new GCMParameterSpec(128, wrappedKey, 0, IV_LEN));
+            return cipher.doFinal(wrappedKey, IV_LEN, wrappedKey.length - IV_LEN);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Не удалось развернуть ключ данных", e);
+        }
+    }
+}
@@ -2,15 +2,24 @@ package com.example.bankcards.util;
 
 public final class Luhn {
     private Luhn() {}
-    public static boolean isValid(String number) {
+
+    /**
+     * Проверка номера по алгоритму Луна. Нецифровые символы (пробелы, дефисы) пропускаются,
+     * цифр должно быть от 12 до 19. Один проход без выделения памяти; номер в char[]
+     * передаётся через CharBuffer.wrap, без создания String.
+     */
+    public static boolean isValid(CharSequence number) {
         if (number == null) return false;
-        String s = number.replaceAll("\\D", "");
-        int sum = 0; boolean alt = false;
-        for (int i = s.length() - 1; i >= 0; i--) {
-            int n = s.charAt(i) - '0';
-            if (alt) { n *= 2; if (n > 9) n -= 9; }
-            sum += n; alt = !alt;
+        int sum = 0;
+        int digits = 0;
+        for (int i = number.length() - 1; i >= 0; i--) {
+            char c = number.charAt(i);
+            if (c < '0' || c > '9') continue;
+            int n = c - '0';
+            if ((digits & 1) == 1) { n *= 2; if (n > 9) n -= 9; }
+            sum += n;
+            digits++;
         }
-        return s.length() >= 12 && s.length() <= 19 && sum % 10 == 0;
+        return digits >= 12 && digits <= 19 && sum % 10 == 0;
     }
 }
@@ -0,0 +1,34 @@
+package com.example.bankcards;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Поднимает встроенный PostgreSQL один раз на JVM и прогоняет на нём миграции Liquibase,
+ * чтобы блокировки, индексы и SQL проверялись на той же СУБД, что и в проде.
+ */
+@SpringBootTest(properties = "logging.level.org.hibernate.SQL=INFO")
+public abstract class AbstractPostgresIntegrationTest {
+
+    private static final EmbeddedPostgres POSTGRES = start();
+
+    private static EmbeddedPostgres start() {
+        try {
+            return EmbeddedPostgres.builder().start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось запустить встроенный PostgreSQL", e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", () -> POSTGRES.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "postgres");
+    }
+}
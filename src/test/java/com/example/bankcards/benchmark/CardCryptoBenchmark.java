@@ -0,0 +1,137 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.CardCrypto;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность CardCrypto до и после пула Cipher, на 1 и 8 потоках.
+ * "legacy" - прежняя реализация: Cipher.getInstance на вызов, общий SecureRandom,
+ * split и Base64 через строки. "binary" - расшифровка двоичного формата card_number_enc. Запуск: mvn -Pbenchmark test -DskipTests -Djmh.include=CardCryptoBenchmark
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardCryptoBenchmark {
+
+    private static final String KEY = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=";
+    private static final String NUMBER = "4111111111111111";
+
+    private CardCrypto pooled;
+    private LegacyCardCrypto legacy;
+    private String stored;
+    private byte[] storedBinary;
+
+    @Setup
+    public void setUp() {
+        pooled = new CardCrypto(KEY);
+        legacy = new LegacyCardCrypto(KEY);
+        stored = pooled.encrypt(NUMBER);
+        storedBinary = CardCrypto.toBinary(stored);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String decryptLegacy1() {
+        return legacy.decrypt(stored);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String decryptPooled1() {
+        return pooled.decrypt(stored);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String decryptLegacy8() {
+        return legacy.decrypt(stored);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String decryptPooled8() {
+        return pooled.decrypt(stored);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String decryptBinary1() {
+        return pooled.decrypt(storedBinary);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String decryptBinary8() {
+        return pooled.decrypt(storedBinary);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String encryptLegacy1() {
+        return legacy.encrypt(NUMBER);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String encryptPooled1() {
+        return pooled.encrypt(NUMBER);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String encryptLegacy8() {
+        return legacy.encrypt(NUMBER);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public String encryptPooled8() {
+        return pooled.encrypt(NUMBER);
+    }
+
+    static final class LegacyCardCrypto {
+
+        private final SecretKeySpec key;
+        private final SecureRandom secureRandom = new SecureRandom();
+
+        LegacyCardCrypto(String b64key) {
+            this.key = new SecretKeySpec(Base64.getDecoder().decode(b64key), "AES");
+        }
+
+        String encrypt(String plain) {
+            try {
+                byte[] iv = new byte[12];
+                secureRandom.nextBytes(iv);
+                Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+                c.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+                byte[] ct = c.doFinal(plain.getBytes());
+                return Base64.getEncoder().encodeToString(iv) + ":" + Base64.getEncoder().encodeToString(ct);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        String decrypt(String stored) {
+            try {
+                String[] parts = stored.split(":");
+                byte[] iv = Base64.getDecoder().decode(parts[0]);
+                byte[] ct = Base64.getDecoder().decode(parts[1]);
+                Cipher c = Cipher.getInstance("AES/GCM/NoPadding");
+                c.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, iv));
+                return new String(c.doFinal(ct));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.BankRestApplication;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.CardMasker;
+import com.example.bankcards.util.Money;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Страница карт владельца: прежний путь (сущности Card в read-write транзакции, затем
+ * маппинг в CardDto) против JPQL-проекции в CardView в read-only транзакции.
+ * Поднимает встроенный PostgreSQL и контекст приложения. Запуск:
+ * mvn -Pbenchmark test -DskipTests -Djmh.include=CardListingBenchmark -Djmh.args="-prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardListingBenchmark {
+
+    private static final int CARDS = 1000;
+
+    @Param({"20", "100", "1000"})
+    public int pageSize;
+
+    private EmbeddedPostgres postgres;
+    private ConfigurableApplicationContext context;
+    private CardService cardService;
+    private CardRepository cardRepository;
+    private TransactionTemplate readWrite;
+    private Long ownerId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        postgres = EmbeddedPostgres.builder().start();
+        context = new SpringApplicationBuilder(BankRestApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                        "--spring.datasource.username=postgres",
+                        "--spring.datasource.password=postgres",
+                        // меряется запрос и проекция, а не попадания в кеш страниц
+                        "--app.card.cache.enabled=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN");
+        cardService = context.getBean(CardService.class);
+        cardRepository = context.getBean(CardRepository.class);
+        readWrite = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        var owner = new User();
+        owner.setUsername("bench-owner");
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        ownerId = context.getBean(UserRepository.class).save(owner).getId();
+        var crypto = context.getBean(CardCrypto.class);
+        List<Card> cards = new ArrayList<>(CARDS);
+        for (int i = 0; i < CARDS; i++) {
+            var card = new Card();
+            card.setOwner(owner);
+            card.setCardNumberEnc(crypto.encryptToBytes("4111111111111111"));
+            card.setCardLast4("1111");
+            card.setExpirationDate(LocalDate.now().plusYears(2));
+            card.setStatus(CardStatus.ACTIVE);
+            card.setBalance(Money.parse("100.00"));
+            cards.add(card);
+        }
+        cardRepository.saveAll(cards);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        postgres.close();
+    }
+
+    @Benchmark
+    public Page<CardDto> entities() {
+        return readWrite.execute(tx -> cardRepository.findByOwnerId(ownerId, PageRequest.of(0, pageSize))
+                .map(c -> new CardDto(c.getId(), c.getOwner().getId(),
+                        CardMasker.maskLast4(c.getCardLast4()), c.getStatus(), c.getBalance())));
+    }
+
+    @Benchmark
+    public Page<CardDto> projection() {
+        return cardService.getUserCards(ownerId, null, PageRequest.of(0, pageSize));
+    }
+}
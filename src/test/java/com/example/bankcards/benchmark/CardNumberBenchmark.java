@@ -0,0 +1,55 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.CardMasker;
+import com.example.bankcards.util.Luhn;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Проверка Луна и маска номера: прежняя реализация через replaceAll("\\D", "")
+ * и однопроходная. Запуск: mvn -Pbenchmark test -DskipTests -Djmh.include=CardNumberBenchmark,
+ * выделения на операцию - с -Djmh.args="-prof gc".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CardNumberBenchmark {
+
+    @Param({"4532015112830366", "4532 0151 1283 0366"})
+    public String number;
+
+    @Benchmark
+    public boolean luhnLegacy() {
+        String s = number.replaceAll("\\D", "");
+        int sum = 0; boolean alt = false;
+        for (int i = s.length() - 1; i >= 0; i--) {
+            int n = s.charAt(i) - '0';
+            if (alt) { n *= 2; if (n > 9) n -= 9; }
+            sum += n; alt = !alt;
+        }
+        return s.length() >= 12 && s.length() <= 19 && sum % 10 == 0;
+    }
+
+    @Benchmark
+    public boolean luhn() {
+        return Luhn.isValid(number);
+    }
+
+    @Benchmark
+    public String maskLegacy() {
+        String design = number.replaceAll("\\D", "");
+        if (design.length() < 4) {
+            return "****";
+        }
+        return "**** **** **** " + design.substring(design.length() - 4);
+    }
+
+    @Benchmark
+    public String mask() {
+        return CardMasker.mask(number);
+    }
+}
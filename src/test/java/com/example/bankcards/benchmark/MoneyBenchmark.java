@@ -0,0 +1,58 @@
+package com.example.bankcards.benchmark;
+
+import com.example.bankcards.util.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Арифметика перевода (проверка остатка, списание, зачисление) на BigDecimal
+ * и на {@link Money}. Запуск: mvn -Pbenchmark test -DskipTests -Djmh.include=MoneyBenchmark,
+ * с -Djmh.args="-prof gc" видно и число выделений на операцию.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+
+    private BigDecimal fromDecimal;
+    private BigDecimal toDecimal;
+    private BigDecimal amountDecimal;
+    private Money from;
+    private Money to;
+    private Money amount;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        fromDecimal = new BigDecimal("1000000.00");
+        toDecimal = new BigDecimal("250.50");
+        amountDecimal = new BigDecimal("0.01");
+        from = Money.of(fromDecimal);
+        to = Money.of(toDecimal);
+        amount = Money.of(amountDecimal);
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimalTransfer() {
+        if (fromDecimal.compareTo(amountDecimal) < 0) {
+            fromDecimal = fromDecimal.add(new BigDecimal("1000000.00"));
+        }
+        fromDecimal = fromDecimal.subtract(amountDecimal);
+        toDecimal = toDecimal.add(amountDecimal);
+        return toDecimal;
+    }
+
+    @Benchmark
+    public Money moneyTransfer() {
+        if (from.isLessThan(amount)) {
+            from = from.plus(Money.parse("1000000.00"));
+        }
+        from = from.minus(amount);
+        to = to.plus(amount);
+        return to;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.bankcards.config;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardSummaryDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardSummaryService;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import liquibase.integration.spring.SpringLiquibase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Реплику изображает второй встроенный PostgreSQL со схемой, но без данных:
+ * всё, что пишется на основную БД, на «реплику» не доезжает, поэтому по
+ * результату чтения видно, куда ушёл запрос.
+ */
+@TestPropertySource(properties = {
+        "app.datasource.replica.enabled=true",
+        "app.datasource.replica.read-your-writes-window=300ms",
+        "app.card.cache.enabled=false"
+})
+class ReplicaRoutingTest extends AbstractPostgresIntegrationTest {
+
+    private static final EmbeddedPostgres REPLICA = startReplica();
+
+    @Autowired
+    CardService cardService;
+    @Autowired
+    CardSummaryService cardSummaryService;
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    private User owner;
+    private Long cardId;
+
+    private static EmbeddedPostgres startReplica() {
+        try {
+            var replica = EmbeddedPostgres.builder().start();
+            var liquibase = new SpringLiquibase();
+            liquibase.setDataSource(replica.getPostgresDatabase());
+            liquibase.setChangeLog("classpath:db/changelog/db.changelog-master.yaml");
+            liquibase.setResourceLoader(new DefaultResourceLoader());
+            liquibase.afterPropertiesSet();
+            return replica;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось запустить встроенный PostgreSQL для реплики", e);
+        } catch (Exception e) {
+            throw new IllegalStateException("Не удалось накатить миграции на реплику", e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void replica(DynamicPropertyRegistry registry) {
+        registry.add("app.datasource.replica.url", () -> REPLICA.getJdbcUrl("postgres", "postgres"));
+        registry.add("app.datasource.replica.username", () -> "postgres");
+        registry.add("app.datasource.replica.password", () -> "postgres");
+    }
+
+    @BeforeEach
+    void setUp() {
+        owner = new User();
+        owner.setUsername("replica-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        owner = userRepository.save(owner);
+
+        var card = new Card();
+        card.setOwner(owner);
+        card.setCardNumber(cardCrypto.encrypt("4111111111111111"));
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse("10.00"));
+        cardId = cardRepository.save(card).getId();
+    }
+
+    @AfterEach
+    void clearPrincipal() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransaction_goesToReplica() {
+        var readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        var readWrite = new TransactionTemplate(transactionManager);
+
+        Integer replicaPort = readOnly.execute(tx -> jdbcTemplate.queryForObject("select inet_server_port()", Integer.class));
+        Integer primaryPort = readWrite.execute(tx -> jdbcTemplate.queryForObject("select inet_server_port()", Integer.class));
+
+        assertThat(replicaPort).isEqualTo(REPLICA.getPort());
+        assertThat(primaryPort).isNotEqualTo(REPLICA.getPort());
+        assertThat(cardIds(owner.getId())).isEmpty();
+    }
+
+    @Test
+    void writer_readsOwnWritesFromPrimaryWithinWindow() throws InterruptedException {
+        authenticate(owner.getUsername());
+        cardService.blockCard(cardId);
+
+        assertThat(readOnlyPort()).isNotEqualTo(REPLICA.getPort());
+
+        authenticate("someone-else");
+        assertThat(readOnlyPort()).isEqualTo(REPLICA.getPort());
+
+        authenticate(owner.getUsername());
+        Thread.sleep(500);
+        assertThat(readOnlyPort()).isEqualTo(REPLICA.getPort());
+    }
+
+    @Test
+    void ownerCaches_afterChangeByAnotherUser_refillFromPrimaryWithinWindow() throws InterruptedException {
+        authenticate(owner.getUsername());
+        assertThat(cardSummaryService.getSummary(owner.getId())).isEmpty();
+
+        authenticate("admin");
+        cardService.blockCard(cardId);
+
+        // владелец не писал сам, но его кеши наполняются с основной БД, а не с отставшей реплики
+        authenticate(owner.getUsername());
+        assertThat(cardSummaryService.getSummary(owner.getId()))
+                .extracting(CardSummaryDto::status).containsExactly(CardStatus.BLOCKED);
+        assertThat(cardIds(owner.getId())).containsExactly(cardId);
+
+        Thread.sleep(500);
+        assertThat(cardIds(owner.getId())).isEmpty();
+    }
+
+    private Integer readOnlyPort() {
+        var readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        return readOnly.execute(tx -> jdbcTemplate.queryForObject("select inet_server_port()", Integer.class));
+    }
+
+    private List<Long> cardIds(Long ownerId) {
+        return cardService.getUserCards(ownerId, null, PageRequest.of(0, 10))
+                .map(CardDto::id).toList();
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+}
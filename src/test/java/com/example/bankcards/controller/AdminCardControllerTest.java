@@ -1,10 +1,15 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardLookupDto;
 import com.example.bankcards.dto.CreateCardDto;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.exception.InvalidCardDataException;
 import com.example.bankcards.security.JwtAuthFilter;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.impl.CardExportServiceImpl;
+import com.example.bankcards.util.Money;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
@@ -16,14 +21,18 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -41,6 +50,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         )
 )
 @AutoConfigureMockMvc(addFilters = false)
+@Import(CardExportServiceImpl.class)
 class AdminCardControllerTest {
 
     @Autowired
@@ -57,23 +67,65 @@ class AdminCardControllerTest {
         var dto1 = new CardDto(1L, 10L,
                 "4111 **** **** 1111",
                 CardStatus.ACTIVE,
-                new BigDecimal("100.00"));
+                Money.parse("100.00"));
         var dto2 = new CardDto(2L, 11L,
                 "5555 **** **** 4444",
                 CardStatus.BLOCKED,
-                new BigDecimal("0.00"));
-        when(cardService.getAllCards()).thenReturn(List.of(dto1, dto2));
+                Money.parse("0.00"));
+        when(cardService.getAllCards(null, 2)).thenReturn(new CursorPage<>(List.of(dto1, dto2), "Mg"));
 
-        mvc.perform(get("/api/admin/cards"))
+        mvc.perform(get("/api/admin/cards").param("size", "2"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[0].id").value(1))
-                .andExpect(jsonPath("$[0].ownerId").value(10))
-                .andExpect(jsonPath("$[0].status").value("ACTIVE"))
-                .andExpect(jsonPath("$[1].status").value("BLOCKED"));
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.content[0].id").value(1))
+                .andExpect(jsonPath("$.content[0].ownerId").value(10))
+                .andExpect(jsonPath("$.content[0].status").value("ACTIVE"))
+                .andExpect(jsonPath("$.content[1].status").value("BLOCKED"))
+                .andExpect(jsonPath("$.nextCursor").value("Mg"));
+
+        verify(cardService).getAllCards(null, 2);
+    }
+
+    @Test
+    void export_streamsCsvPageByPage() throws Exception {
+        var dto1 = new CardDto(1L, 10L, "**** **** **** 1111", CardStatus.ACTIVE, Money.parse("100.00"));
+        var dto2 = new CardDto(2L, 11L, "**** **** **** 4444", CardStatus.BLOCKED, Money.parse("0.50"));
+        when(cardService.getAllCards(ArgumentMatchers.isNull(), anyInt())).thenReturn(new CursorPage<>(List.of(dto1), "MQ"));
+        when(cardService.getAllCards(ArgumentMatchers.eq("MQ"), anyInt())).thenReturn(new CursorPage<>(List.of(dto2), null));
+
+        var result = mvc.perform(get("/api/admin/cards/export").param("format", "CSV"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // тайм-аут выгрузки задан самому запросу, а не всему spring.mvc.async
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(Duration.ofMinutes(30).toMillis());
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string("""
+                        id,ownerId,number,status,balance
+                        1,10,**** **** **** 1111,ACTIVE,100.00
+                        2,11,**** **** **** 4444,BLOCKED,0.50
+                        """));
+    }
+
+    @Test
+    void export_streamsNdjson() throws Exception {
+        var dto = new CardDto(1L, 10L, "**** **** **** 1111", CardStatus.ACTIVE, Money.parse("100.00"));
+        when(cardService.getAllCards(ArgumentMatchers.isNull(), anyInt())).thenReturn(new CursorPage<>(List.of(dto, dto), null));
+
+        var result = mvc.perform(get("/api/admin/cards/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
 
-        verify(cardService).getAllCards();
+        var body = mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+        var lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(om.readValue(lines[1], CardDto.class)).isEqualTo(dto);
     }
 
     @Test
@@ -86,7 +138,7 @@ class AdminCardControllerTest {
                 10L,
                 "4111 **** **** 1111",
                 CardStatus.ACTIVE,
-                new BigDecimal("500.00"));
+                Money.parse("500.00"));
         when(cardService.createCard(ArgumentMatchers.any(CreateCardDto.class))).thenReturn(response);
 
         mvc.perform(post("/api/admin/cards")
@@ -100,12 +152,25 @@ class AdminCardControllerTest {
         verify(cardService).createCard(ArgumentMatchers.any(CreateCardDto.class));
     }
 
+    @Test
+    void create_invalidBalance_returnsBadRequest() throws Exception {
+        when(cardService.createCard(ArgumentMatchers.any(CreateCardDto.class)))
+                .thenThrow(new InvalidCardDataException("Баланс указывается с точностью до копейки"));
+
+        mvc.perform(post("/api/admin/cards")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(new CreateCardDto(10L, "4111111111111111",
+                                LocalDate.of(2030, 12, 31), new BigDecimal("1.001")))))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Баланс указывается с точностью до копейки"));
+    }
+
     @Test
     void block_blocksCard() throws Exception {
         var dto = new CardDto(1L, 10L,
                 "4111 **** **** 1111",
                 CardStatus.BLOCKED,
-                new BigDecimal("100.00"));
+                Money.parse("100.00"));
         when(cardService.blockCard(1L)).thenReturn(dto);
 
         mvc.perform(patch("/api/admin/cards/{id}/block", 1))
@@ -115,12 +180,27 @@ class AdminCardControllerTest {
         verify(cardService).blockCard(1L);
     }
 
+    @Test
+    void setBalanceBuckets_stripesCard() throws Exception {
+        var dto = new CardDto(1L, 10L,
+                "4111 **** **** 1111",
+                CardStatus.ACTIVE,
+                Money.parse("100.00"));
+        when(cardService.setBalanceBuckets(1L, 8)).thenReturn(dto);
+
+        mvc.perform(patch("/api/admin/cards/{id}/balance-buckets", 1).param("count", "8"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(100.00));
+
+        verify(cardService).setBalanceBuckets(1L, 8);
+    }
+
     @Test
     void activate_activatesCard() throws Exception {
         var dto = new CardDto(1L, 10L,
                 "4111 **** **** 1111",
                 CardStatus.ACTIVE,
-                new BigDecimal("100.00"));
+                Money.parse("100.00"));
         when(cardService.activateCard(1L)).thenReturn(dto);
 
         mvc.perform(patch("/api/admin/cards/{id}/activate", 1))
@@ -143,7 +223,7 @@ class AdminCardControllerTest {
         var result = new CardDto(1L, 10L,
                 "4111 **** **** 1111",
                 CardStatus.BLOCKED,
-                new BigDecimal("100.00"));
+                Money.parse("100.00"));
         when(cardService.requestBlock(10L, 1L)).thenReturn(result);
 
         mvc.perform(patch("/api/admin/cards/{userId}/request-block", 10)
@@ -153,4 +233,17 @@ class AdminCardControllerTest {
 
         verify(cardService).requestBlock(10L, 1L);
     }
+
+    @Test
+    void lookup_findsCardByNumberFromBody() throws Exception {
+        var dto = new CardDto(5L, 10L, "**** **** **** 1111", CardStatus.ACTIVE, Money.parse("1.00"));
+        when(cardService.findByNumber("4111111111111111")).thenReturn(dto);
+
+        mvc.perform(post("/api/admin/cards/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(new CardLookupDto("4111111111111111"))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(5))
+                .andExpect(jsonPath("$.number").value("**** **** **** 1111"));
+    }
 }
@@ -1,6 +1,7 @@
 package com.example.bankcards.controller;
 
 import com.example.bankcards.dto.CreateUserDto;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.UserDto;
 import com.example.bankcards.entity.enums.Role;
 import com.example.bankcards.security.JwtAuthFilter;
@@ -50,19 +51,34 @@ class AdminUserControllerTest {
 
     @Test
     void getAllUsers_returnsList() throws Exception {
-        when(userService.getAllUsers()).thenReturn(List.of(
+        when(userService.getUsers(null, 100, null)).thenReturn(new CursorPage<>(List.of(
                 new UserDto(1L, "alice", Role.ADMIN),
                 new UserDto(2L, "bob", Role.USER)
-        ));
+        ), null));
 
         mvc.perform(get("/api/admin/users/all"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
-                .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[0].username").value("alice"))
-                .andExpect(jsonPath("$[1].role").value("USER"));
+                .andExpect(jsonPath("$.content", hasSize(2)))
+                .andExpect(jsonPath("$.content[0].username").value("alice"))
+                .andExpect(jsonPath("$.content[1].role").value("USER"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
 
-        verify(userService).getAllUsers();
+        verify(userService).getUsers(null, 100, null);
+    }
+
+    @Test
+    void getAllUsers_passesCursorSizeAndRole() throws Exception {
+        when(userService.getUsers("MTA", 20, Role.ADMIN)).thenReturn(new CursorPage<>(List.of(
+                new UserDto(11L, "root", Role.ADMIN)), "MTE"));
+
+        mvc.perform(get("/api/admin/users/all")
+                        .param("cursor", "MTA")
+                        .param("size", "20")
+                        .param("role", "ADMIN"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content[0].id").value(11))
+                .andExpect(jsonPath("$.nextCursor").value("MTE"));
     }
 
     @Test
@@ -1,10 +1,23 @@
 package com.example.bankcards.controller;
 
+import com.example.bankcards.dto.AsyncTransferDto;
+import com.example.bankcards.dto.BatchTransferResultDto;
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardSummaryDto;
+import com.example.bankcards.dto.CardTransactionDto;
+import com.example.bankcards.dto.CursorPage;
 import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.enums.AsyncTransferStatus;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.CardTransactionType;
+import com.example.bankcards.exception.InvalidTransferException;
 import com.example.bankcards.security.JwtAuthFilter;
+import com.example.bankcards.service.AsyncTransferService;
 import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardSummaryService;
+import com.example.bankcards.service.TransferOutcome;
+import com.example.bankcards.service.TransferService;
+import com.example.bankcards.util.Money;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
@@ -21,10 +34,14 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.List;
+import java.util.UUID;
 
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -52,17 +69,131 @@ class UserCardControllerTest {
 
     @MockBean
     CardService cardService;
+    @MockBean
+    TransferService transferService;
+    @MockBean
+    AsyncTransferService asyncTransferService;
+    @MockBean
+    CardSummaryService cardSummaryService;
 
     @Test
     void transfer_callsServiceAndReturnsOk() throws Exception {
         var req = new TransferDto(1L, 2L, new BigDecimal("50.00"));
+        when(transferService.transfer(eq(42L), isNull(), ArgumentMatchers.any(TransferDto.class)))
+                .thenReturn(TransferOutcome.ok());
+
+        mvc.perform(post("/api/users/{userId}/cards/transfer", 42)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+
+        verify(transferService).transfer(eq(42L), isNull(), ArgumentMatchers.any(TransferDto.class));
+    }
+
+    @Test
+    void transfer_replayedByIdempotencyKey_returnsStoredOutcome() throws Exception {
+        var req = new TransferDto(1L, 2L, new BigDecimal("50.00"));
+        when(transferService.transfer(eq(42L), eq("key-1"), ArgumentMatchers.any(TransferDto.class)))
+                .thenReturn(new TransferOutcome(409, "Недостаточно средств", true));
+
+        mvc.perform(post("/api/users/{userId}/cards/transfer", 42)
+                        .header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(req)))
+                .andExpect(status().isConflict())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(content().string("Недостаточно средств"));
+    }
+
+    @Test
+    void transfer_amountTooLarge_returnsBadRequest() throws Exception {
+        var req = new TransferDto(1L, 2L, new BigDecimal("1e30"));
+        when(transferService.transfer(eq(42L), isNull(), ArgumentMatchers.any(TransferDto.class)))
+                .thenThrow(new InvalidTransferException("Сумма не может превышать 9999999999999.99"));
 
         mvc.perform(post("/api/users/{userId}/cards/transfer", 42)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(om.writeValueAsString(req)))
-                .andExpect(status().isOk());
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Сумма не может превышать 9999999999999.99"));
+    }
+
+    @Test
+    void submitTransfer_returnsAcceptedWithLocation() throws Exception {
+        var id = UUID.randomUUID();
+        var req = new TransferDto(1L, 2L, new BigDecimal("50.00"));
+        when(asyncTransferService.submit(eq(42L), ArgumentMatchers.any(TransferDto.class)))
+                .thenReturn(new AsyncTransferDto(id, AsyncTransferStatus.PENDING, null, null));
+
+        mvc.perform(post("/api/users/{userId}/cards/transfers", 42)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(req)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/users/42/cards/transfers/" + id))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+    }
+
+    @Test
+    void submitTransfer_invalidAmount_returnsBadRequest() throws Exception {
+        var req = new TransferDto(1L, 2L, new BigDecimal("1.001"));
+        when(asyncTransferService.submit(eq(42L), ArgumentMatchers.any(TransferDto.class)))
+                .thenThrow(new InvalidTransferException("Сумма указывается с точностью до копейки"));
+
+        mvc.perform(post("/api/users/{userId}/cards/transfers", 42)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(req)))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist("Location"))
+                .andExpect(content().string("Сумма указывается с точностью до копейки"));
+    }
+
+    @Test
+    void getTransfer_returnsFailureWithErrorCode() throws Exception {
+        var id = UUID.randomUUID();
+        when(asyncTransferService.get(42L, id))
+                .thenReturn(new AsyncTransferDto(id, AsyncTransferStatus.FAILED, 409, "Недостаточно средств"));
+
+        mvc.perform(get("/api/users/{userId}/cards/transfers/{id}", 42, id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("FAILED"))
+                .andExpect(jsonPath("$.errorStatus").value(409))
+                .andExpect(jsonPath("$.error").value("Недостаточно средств"));
+    }
+
+    @Test
+    void transferBatch_callsServiceAndReturnsResult() throws Exception {
+        var req = List.of(
+                new TransferDto(1L, 2L, new BigDecimal("50.00")),
+                new TransferDto(2L, 3L, new BigDecimal("10.00")));
+        when(cardService.transferBatch(eq(42L), ArgumentMatchers.anyList()))
+                .thenReturn(new BatchTransferResultDto(2, 3));
+
+        mvc.perform(post("/api/users/{userId}/cards/transfers/batch", 42)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(om.writeValueAsString(req)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transfers").value(2))
+                .andExpect(jsonPath("$.updatedCards").value(3));
 
-        verify(cardService).transfer(eq(42L), ArgumentMatchers.any(TransferDto.class));
+        verify(cardService).transferBatch(eq(42L), ArgumentMatchers.anyList());
+    }
+
+    @Test
+    void getCardTransactions_returnsCursorPage() throws Exception {
+        var page = new CursorPage<>(List.of(
+                new CardTransactionDto(5L, 1L, 2L, CardTransactionType.DEBIT,
+                        new BigDecimal("50.00"), Instant.parse("2026-01-01T10:00:00Z"))),
+                "next");
+        when(cardService.getCardTransactions(42L, 1L, "abc", 1)).thenReturn(page);
+
+        mvc.perform(get("/api/users/{userId}/cards/{cardId}/transactions", 42, 1)
+                        .param("cursor", "abc")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].type").value("DEBIT"))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
     }
 
     @Test
@@ -71,11 +202,11 @@ class UserCardControllerTest {
                 new CardDto(1L, 42L,
                         "4111 **** **** 1111",
                         CardStatus.ACTIVE,
-                        new BigDecimal("100.00")),
+                        Money.parse("100.00")),
                 new CardDto(2L, 42L,
                         "5555 **** **** 4444",
                         CardStatus.ACTIVE,
-                        new BigDecimal("200.00"))
+                        Money.parse("200.00"))
         ));
         when(cardService.getUserCards(eq(42L), eq(CardStatus.ACTIVE), ArgumentMatchers.any()))
                 .thenReturn(page);
@@ -100,7 +231,7 @@ class UserCardControllerTest {
                 new CardDto(3L, 42L,
                         "4000 **** **** 0002",
                         CardStatus.BLOCKED,
-                        new BigDecimal("0.00"))
+                        Money.parse("0.00"))
         ));
         when(cardService.getUserCards(eq(42L),
                 eq(null),
@@ -113,4 +244,66 @@ class UserCardControllerTest {
 
         verify(cardService).getUserCards(eq(42L), eq(null), ArgumentMatchers.any());
     }
+
+    @Test
+    void getUserCards_returnsWeakEtag_andNotModifiedWithoutLoadingCards() throws Exception {
+        when(cardService.getUserCardsVersion(42L)).thenReturn("a1-7");
+        when(cardService.getUserCards(eq(42L), eq(null), ArgumentMatchers.any()))
+                .thenReturn(new PageImpl<>(List.of()));
+
+        mvc.perform(get("/api/users/{userId}/cards", 42))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"a1-7\""));
+
+        mvc.perform(get("/api/users/{userId}/cards", 42)
+                        .header("If-None-Match", "W/\"a1-7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "W/\"a1-7\""))
+                .andExpect(content().string(""));
+
+        verify(cardService, times(1)).getUserCards(eq(42L), eq(null), ArgumentMatchers.any());
+    }
+
+    @Test
+    void getUserCards_staleEtag_returnsPage() throws Exception {
+        when(cardService.getUserCardsVersion(42L)).thenReturn("a1-8");
+        when(cardService.getUserCards(eq(42L), eq(null), ArgumentMatchers.any()))
+                .thenReturn(new PageImpl<>(List.of()));
+
+        mvc.perform(get("/api/users/{userId}/cards", 42)
+                        .header("If-None-Match", "W/\"a1-7\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"a1-8\""));
+    }
+
+    @Test
+    void getSummary_returnsTotalsByStatus() throws Exception {
+        when(cardSummaryService.getSummary(42L)).thenReturn(List.of(
+                new CardSummaryDto(CardStatus.ACTIVE, 2, Money.parse("300.00")),
+                new CardSummaryDto(CardStatus.BLOCKED, 1, Money.parse("0.00"))));
+
+        mvc.perform(get("/api/users/{userId}/cards/summary", 42))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].status").value("ACTIVE"))
+                .andExpect(jsonPath("$[0].count").value(2))
+                .andExpect(jsonPath("$[1].status").value("BLOCKED"));
+    }
+
+    @Test
+    void getUserCardsSlice_returnsCursorPage() throws Exception {
+        when(cardService.getUserCardsSlice(42L, CardStatus.ACTIVE, "MQ", 2)).thenReturn(new CursorPage<>(List.of(
+                new CardDto(2L, 42L, "**** **** **** 4444", CardStatus.ACTIVE, Money.parse("200.00"))), "Mg"));
+
+        mvc.perform(get("/api/users/{userId}/cards/slice", 42)
+                        .param("status", "ACTIVE")
+                        .param("cursor", "MQ")
+                        .param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content", hasSize(1)))
+                .andExpect(jsonPath("$.content[0].id").value(2))
+                .andExpect(jsonPath("$.nextCursor").value("Mg"));
+
+        verify(cardService).getUserCardsSlice(42L, CardStatus.ACTIVE, "MQ", 2);
+    }
 }
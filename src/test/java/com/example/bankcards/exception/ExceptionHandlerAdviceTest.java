@@ -0,0 +1,29 @@
+package com.example.bankcards.exception;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ExceptionHandlerAdviceTest {
+
+    @Test
+    void statusOf_businessException() {
+        assertEquals(HttpStatus.BAD_REQUEST, ExceptionHandlerAdvice.statusOf(new InvalidTransferException("x")));
+        assertEquals(HttpStatus.CONFLICT, ExceptionHandlerAdvice.statusOf(new InsufficientFundsException("x")));
+    }
+
+    @Test
+    void statusOf_subclassResolvedByNearestHandler() {
+        assertEquals(HttpStatus.NOT_FOUND, ExceptionHandlerAdvice.statusOf(new CardNotFoundException("x") {
+        }));
+    }
+
+    @Test
+    void statusOf_notBusinessException_isNull() {
+        assertNull(ExceptionHandlerAdvice.statusOf(new IllegalStateException("x")));
+        assertNull(ExceptionHandlerAdvice.statusOf(new ObjectOptimisticLockingFailureException(Object.class, 1L)));
+    }
+}
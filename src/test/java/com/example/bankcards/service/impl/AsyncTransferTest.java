@@ -0,0 +1,132 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.dto.AsyncTransferDto;
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.AsyncTransferStatus;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.exception.ExceptionHandlerAdvice;
+import com.example.bankcards.exception.InvalidTransferException;
+import com.example.bankcards.exception.TransferNotFoundException;
+import com.example.bankcards.repository.AsyncTransferRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.AsyncTransferService;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AsyncTransferTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    AsyncTransferService asyncTransferService;
+    @Autowired
+    AsyncTransferRepository asyncTransferRepository;
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+
+    private Long ownerId;
+    private Long fromId;
+    private Long toId;
+
+    @BeforeEach
+    void setUp() {
+        var owner = new User();
+        owner.setUsername("async-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        ownerId = userRepository.save(owner).getId();
+        fromId = cardRepository.save(card(owner, "100.00")).getId();
+        toId = cardRepository.save(card(owner, "0.00")).getId();
+    }
+
+    @Test
+    void submittedTransfer_completesInBackground() throws Exception {
+        var submitted = asyncTransferService.submit(ownerId, new TransferDto(fromId, toId, new BigDecimal("40.00")));
+
+        assertThat(submitted.status()).isEqualTo(AsyncTransferStatus.PENDING);
+        var done = awaitCompletion(submitted.id());
+        assertThat(done.status()).isEqualTo(AsyncTransferStatus.DONE);
+        assertThat(done.errorStatus()).isNull();
+        assertThat(balance(fromId)).isEqualByComparingTo("60.00");
+        assertThat(balance(toId)).isEqualByComparingTo("40.00");
+    }
+
+    @Test
+    void failedTransfer_reportsSameErrorAsSynchronousCall() throws Exception {
+        var submitted = asyncTransferService.submit(ownerId, new TransferDto(fromId, toId, new BigDecimal("500.00")));
+
+        var failed = awaitCompletion(submitted.id());
+        assertThat(failed.status()).isEqualTo(AsyncTransferStatus.FAILED);
+        assertThat(failed.errorStatus()).isEqualTo(409);
+        assertThat(failed.error()).isEqualTo("Недостаточно средств");
+        assertThat(balance(fromId)).isEqualByComparingTo("100.00");
+    }
+
+    @Test
+    void invalidTransfer_rejectedOnSubmitAsBadRequest_andNotStored() {
+        long stored = asyncTransferRepository.count();
+
+        for (var dto : List.of(
+                new TransferDto(fromId, toId, new BigDecimal("1.001")),
+                new TransferDto(fromId, fromId, new BigDecimal("1.00")),
+                new TransferDto(fromId, toId, new BigDecimal("0.00")),
+                new TransferDto(fromId, toId, new BigDecimal("1e30")))) {
+            assertThatThrownBy(() -> asyncTransferService.submit(ownerId, dto))
+                    .isInstanceOfSatisfying(InvalidTransferException.class, e ->
+                            assertThat(ExceptionHandlerAdvice.statusOf(e)).isEqualTo(HttpStatus.BAD_REQUEST));
+        }
+        assertThat(asyncTransferRepository.count()).isEqualTo(stored);
+    }
+
+    @Test
+    void foreignTransfer_notFound() {
+        var submitted = asyncTransferService.submit(ownerId, new TransferDto(fromId, toId, new BigDecimal("1.00")));
+
+        assertThatThrownBy(() -> asyncTransferService.get(ownerId + 1, submitted.id()))
+                .isInstanceOf(TransferNotFoundException.class);
+    }
+
+    private AsyncTransferDto awaitCompletion(UUID id) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            var transfer = asyncTransferService.get(ownerId, id);
+            if (transfer.status() != AsyncTransferStatus.PENDING) {
+                return transfer;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("Перевод " + id + " не завершился");
+    }
+
+    private Card card(User owner, String balance) {
+        var card = new Card();
+        card.setOwner(owner);
+        card.setCardNumber(cardCrypto.encrypt("4111111111111111"));
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse(balance));
+        return card;
+    }
+
+    private BigDecimal balance(Long cardId) {
+        return cardRepository.findById(cardId).orElseThrow().getBalance().toBigDecimal();
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.exception.InvalidCursorException;
+import com.example.bankcards.repository.CardBalanceBucketRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CardListingTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    CardService cardService;
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardBalanceBucketRepository bucketRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    void allCards_pagesByIdWithCursor() {
+        var owner = new User();
+        owner.setUsername("listing-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        userRepository.save(owner);
+        List<Long> created = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            created.add(cardRepository.save(card(owner)).getId());
+        }
+
+        // общая БД: начинаем сразу перед своими картами, чужие записи других тестов не трогаем
+        List<CardDto> seen = new ArrayList<>();
+        String cursor = new IdCursor(created.get(0) - 1).encode();
+        do {
+            var page = cardService.getAllCards(cursor, 2);
+            assertThat(page.content()).hasSizeLessThanOrEqualTo(2);
+            seen.addAll(page.content());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(seen).extracting(CardDto::id).containsExactlyElementsOf(created);
+        assertThat(seen).extracting(CardDto::number).containsOnly("**** **** **** 1111");
+    }
+
+    @Test
+    void allCards_stripedCardBalanceIncludesBuckets() {
+        var owner = new User();
+        owner.setUsername("listing-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        userRepository.save(owner);
+        var striped = card(owner);
+        striped.setBalanceBuckets(2);
+        Long id = cardRepository.save(striped).getId();
+        transactionTemplate.executeWithoutResult(tx -> {
+            bucketRepository.create(id, 2);
+            bucketRepository.credit(id, 0, new BigDecimal("2.50"));
+            bucketRepository.credit(id, 1, new BigDecimal("0.25"));
+        });
+
+        var page = cardService.getAllCards(new IdCursor(id - 1).encode(), 1);
+
+        assertThat(page.content()).extracting(CardDto::id).containsExactly(id);
+        assertThat(page.content().get(0).balance()).isEqualTo(Money.parse("12.75"));
+    }
+
+    @Test
+    void allCards_rejectsGarbageCursor() {
+        assertThatThrownBy(() -> cardService.getAllCards("%%%", 10))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
+    private Card card(User owner) {
+        var card = new Card();
+        card.setOwner(owner);
+        card.setCardNumber(cardCrypto.encrypt("4111111111111111"));
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse("10.00"));
+        return card;
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardBlindIndex;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardNumberBackfillTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    CardNumberBackfill backfill;
+    @Autowired
+    CardService cardService;
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+    @Autowired
+    CardBlindIndex blindIndex;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void backfill_fillsNumberColumnsOnceWithoutBumpingVersion() {
+        var owner = owner();
+        Long ownerId = owner.getId();
+        String number = randomNumber();
+        var saved = cardRepository.save(card(owner, number));
+        long version = saved.getVersion();
+
+        backfill.backfill();
+
+        var reloaded = cardRepository.findById(saved.getId()).orElseThrow();
+        assertThat(reloaded.getCardLast4()).isEqualTo(number.substring(12));
+        assertThat(reloaded.getCardNumberHmac()).isEqualTo(blindIndex.of(number));
+        assertThat(reloaded.getVersion()).isEqualTo(version);
+        assertThat(backfill.backfill()).isZero();
+        assertThat(cardService.getUserCards(ownerId, null, PageRequest.of(0, 10)).getContent())
+                .singleElement()
+                .satisfies(dto -> assertThat(dto.number()).isEqualTo("**** **** **** " + number.substring(12)));
+        assertThat(cardService.findByNumber(number).id()).isEqualTo(saved.getId());
+    }
+
+    @Test
+    void staleCardWrite_afterBackfill_keepsNumberColumns() {
+        String number = randomNumber();
+        Long cardId = cardRepository.save(card(owner(), number)).getId();
+
+        // карта прочитана до дозаполнения, а сохранена после его коммита
+        new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+            var stale = cardRepository.findById(cardId).orElseThrow();
+            CompletableFuture.runAsync(backfill::backfill).join();
+            stale.setStatus(CardStatus.BLOCKED);
+        });
+
+        var reloaded = cardRepository.findById(cardId).orElseThrow();
+        assertThat(reloaded.getStatus()).isEqualTo(CardStatus.BLOCKED);
+        assertThat(reloaded.getCardLast4()).isEqualTo(number.substring(12));
+        assertThat(reloaded.getCardNumberHmac()).isEqualTo(blindIndex.of(number));
+    }
+
+    private User owner() {
+        var owner = new User();
+        owner.setUsername("last4-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        return userRepository.save(owner);
+    }
+
+    private Card card(User owner, String number) {
+        var card = new Card();
+        card.setOwner(owner);
+        card.setCardNumber(cardCrypto.encrypt(number));
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse("1.00"));
+        return card;
+    }
+
+    private static String randomNumber() {
+        return "5555" + ThreadLocalRandom.current().nextLong(100_000_000_000L, 1_000_000_000_000L);
+    }
+}
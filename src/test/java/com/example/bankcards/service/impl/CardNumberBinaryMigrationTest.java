@@ -0,0 +1,83 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardNumberBinaryMigrationTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    CardNumberBinaryMigration migration;
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void migrate_movesTextNumbersToBinaryColumn() {
+        var saved = cardRepository.save(textCard());
+
+        migration.migrate();
+
+        var reloaded = cardRepository.findById(saved.getId()).orElseThrow();
+        assertThat(reloaded.getCardNumber()).isNull();
+        assertThat(cardCrypto.decrypt(reloaded.getCardNumberEnc())).isEqualTo("4111111111111111");
+        assertThat(reloaded.getVersion()).isEqualTo(saved.getVersion());
+        assertThat(cardRepository.findWithTextNumber(saved.getId() - 1, Limit.of(1)))
+                .extracting(Card::getId).doesNotContain(saved.getId());
+    }
+
+    @Test
+    void staleCardWrite_afterMigration_keepsBinaryNumber() {
+        Long cardId = cardRepository.save(textCard()).getId();
+
+        // карта прочитана до переноса номера, а сохранена после его коммита
+        new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+            var stale = cardRepository.findById(cardId).orElseThrow();
+            CompletableFuture.runAsync(migration::migrate).join();
+            stale.setStatus(CardStatus.BLOCKED);
+        });
+
+        var reloaded = cardRepository.findById(cardId).orElseThrow();
+        assertThat(reloaded.getStatus()).isEqualTo(CardStatus.BLOCKED);
+        assertThat(reloaded.getCardNumber()).isNull();
+        assertThat(cardCrypto.decrypt(reloaded.getCardNumberEnc())).isEqualTo("4111111111111111");
+    }
+
+    private Card textCard() {
+        var owner = new User();
+        owner.setUsername("binary-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        userRepository.save(owner);
+        var card = new Card();
+        card.setOwner(owner);
+        card.setCardNumber(cardCrypto.encrypt("4111111111111111"));
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse("1.00"));
+        return card;
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardReencryptionJobTest extends AbstractPostgresIntegrationTest {
+
+    private static final String NEW_KEY = "ZmVkY2JhOTg3NjU0MzIxMGZlZGNiYTk4NzY1NDMyMTA=";
+
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${app.card.crypto.key}")
+    String currentKey;
+
+    @Test
+    void rotation_reencryptsAllFormatsWithActiveKey() {
+        var owner = new User();
+        owner.setUsername("rekey-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        userRepository.save(owner);
+        var text = cardRepository.save(card(owner, c -> c.setCardNumber(cardCrypto.encrypt("4111111111111111"))));
+        var v1 = cardRepository.save(card(owner, c -> c.setCardNumberEnc(CardCrypto.toBinary(cardCrypto.encrypt("5555555555554444")))));
+        var v2 = cardRepository.save(card(owner, c -> c.setCardNumberEnc(cardCrypto.encryptToBytes("4000056655665556"))));
+
+        var rotated = new CardCrypto(currentKey, "1:" + NEW_KEY, 1);
+        var registry = new SimpleMeterRegistry();
+        var job = new CardReencryptionJob(jdbcTemplate, rotated, transactionManager, registry,
+                true, 2, Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ofMillis(50));
+        try {
+            job.run();
+
+            for (var card : List.of(text, v1, v2)) {
+                var reloaded = cardRepository.findById(card.getId()).orElseThrow();
+                assertThat(reloaded.getCardNumber()).isNull();
+                assertThat(CardCrypto.keyIdOf(reloaded.getCardNumberEnc())).isEqualTo(1);
+                assertThat(reloaded.getVersion()).isEqualTo(card.getVersion());
+            }
+            assertThat(rotated.decrypt(cardRepository.findById(v1.getId()).orElseThrow().getCardNumberEnc()))
+                    .isEqualTo("5555555555554444");
+            double rows = registry.get("card.reencryption.rows").counter().count();
+            assertThat(rows).isGreaterThanOrEqualTo(3);
+            // проход с изменениями повторяется, пока не останется нечего перешифровывать
+            job.run();
+            assertThat(registry.get("card.reencryption.rows").counter().count()).isEqualTo(rows);
+        } finally {
+            // обратная ротация: остальные тесты работают с ключом 0
+            var back = new CardCrypto(currentKey, "1:" + NEW_KEY, 0);
+            new CardReencryptionJob(jdbcTemplate, back, transactionManager, new SimpleMeterRegistry(),
+                    true, 100, Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ofMillis(50)).run();
+        }
+        assertThat(cardCrypto.decrypt(cardRepository.findById(text.getId()).orElseThrow().getCardNumberEnc()))
+                .isEqualTo("4111111111111111");
+    }
+
+    @Test
+    void staleCardWrite_afterReencryption_keepsNewCiphertext() {
+        var owner = new User();
+        owner.setUsername("rekey-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        userRepository.save(owner);
+        Long cardId = cardRepository.save(card(owner, c -> c.setCardNumberEnc(cardCrypto.encryptToBytes("4111111111111111")))).getId();
+
+        var rotated = new CardCrypto(currentKey, "1:" + NEW_KEY, 1);
+        var job = new CardReencryptionJob(jdbcTemplate, rotated, transactionManager, new SimpleMeterRegistry(),
+                true, 100, Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ofMillis(50));
+        try {
+            // карта прочитана до перешифрования, а сохранена после его коммита
+            new TransactionTemplate(transactionManager).executeWithoutResult(tx -> {
+                var stale = cardRepository.findById(cardId).orElseThrow();
+                CompletableFuture.runAsync(job::run).join();
+                stale.setStatus(CardStatus.BLOCKED);
+            });
+
+            var reloaded = cardRepository.findById(cardId).orElseThrow();
+            assertThat(reloaded.getStatus()).isEqualTo(CardStatus.BLOCKED);
+            assertThat(CardCrypto.keyIdOf(reloaded.getCardNumberEnc())).isEqualTo(1);
+            assertThat(rotated.decrypt(reloaded.getCardNumberEnc())).isEqualTo("4111111111111111");
+        } finally {
+            var back = new CardCrypto(currentKey, "1:" + NEW_KEY, 0);
+            new CardReencryptionJob(jdbcTemplate, back, transactionManager, new SimpleMeterRegistry(),
+                    true, 100, Duration.ofMinutes(1), Duration.ofSeconds(1), Duration.ofMillis(50)).run();
+        }
+    }
+
+    private Card card(User owner, Consumer<Card> number) {
+        var card = new Card();
+        card.setOwner(owner);
+        number.accept(card);
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse("1.00"));
+        return card;
+    }
+}
@@ -1,30 +1,61 @@
 package com.example.bankcards.service.impl;
 
+import com.example.bankcards.config.ReadYourWritesWindow;
 import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.CardTransactionDto;
+import com.example.bankcards.dto.CardView;
 import com.example.bankcards.dto.CreateCardDto;
 import com.example.bankcards.dto.TransferDto;
 import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.CardTransaction;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.CardTransactionType;
 import com.example.bankcards.entity.enums.Role;
 import com.example.bankcards.exception.*;
+import com.example.bankcards.repository.CardBalanceBucketRepository;
 import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
 import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardsChangedEvent;
+import com.example.bankcards.service.GroupTransfer;
+import com.example.bankcards.service.TransferMode;
+import com.example.bankcards.util.CardBlindIndex;
 import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
+import java.util.TreeSet;
 
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.intThat;
 import static org.mockito.Mockito.*;
 
 class CardServiceImplTest {
@@ -35,8 +66,21 @@ class CardServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private CardTransactionRepository cardTransactionRepository;
+
+    @Mock
+    private CardBalanceBucketRepository bucketRepository;
+
+    @Mock
+    private ApplicationEventPublisher events;
+
+    private final UserCardsCache userCardsCache = new UserCardsCache(new SimpleMeterRegistry(), new ReadYourWritesWindow(false, Duration.ZERO, 1), false, 100, Duration.ofMinutes(1));
+
     private CardCrypto cardCrypto;
 
+    private CardBlindIndex blindIndex;
+
     private CardServiceImpl cardService;
 
     private AutoCloseable mocks;
@@ -45,7 +89,8 @@ class CardServiceImplTest {
     void setUp() {
         mocks = MockitoAnnotations.openMocks(this);
         cardCrypto = new CardCrypto("MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=");
-        cardService = new CardServiceImpl(cardRepository, userRepository, cardCrypto);
+        blindIndex = new CardBlindIndex("ZmVkY2JhOTg3NjU0MzIxMGZlZGNiYTk4NzY1NDMyMTA=");
+        cardService = new CardServiceImpl(cardRepository, userRepository, cardCrypto, blindIndex, cardTransactionRepository, bucketRepository, TransferMode.PESSIMISTIC, false, events, userCardsCache);
     }
 
     @AfterEach
@@ -80,10 +125,17 @@ class CardServiceImplTest {
         assertEquals(10L, created.id());
         assertEquals(1L, created.ownerId());
         assertEquals(CardStatus.ACTIVE, created.status());
-        assertEquals(new BigDecimal("100.00"), created.balance());
+        assertEquals(Money.parse("100.00"), created.balance());
+        assertEquals("**** **** **** 0366", created.number());
 
+        ArgumentCaptor<Card> saved = ArgumentCaptor.forClass(Card.class);
         verify(userRepository).findById(1L);
-        verify(cardRepository).save(any(Card.class));
+        verify(cardRepository).existsByCardNumberHmac(blindIndex.of("4532015112830366"));
+        verify(cardRepository).save(saved.capture());
+        assertEquals("0366", saved.getValue().getCardLast4());
+        assertNull(saved.getValue().getCardNumber());
+        assertEquals("4532015112830366", cardCrypto.decrypt(saved.getValue().getCardNumberEnc()));
+        assertEquals(blindIndex.of("4532 0151 1283 0366"), saved.getValue().getCardNumberHmac());
         verifyNoMoreInteractions(cardRepository, userRepository);
     }
 
@@ -103,7 +155,7 @@ class CardServiceImplTest {
         existing.setCardNumber(encNumber);
         existing.setExpirationDate(LocalDate.now().plusYears(2));
         existing.setStatus(CardStatus.ACTIVE);
-        existing.setBalance(new BigDecimal("10.00"));
+        existing.setBalance(Money.parse("10.00"));
 
         when(cardRepository.findById(11L)).thenReturn(Optional.of(existing));
         when(cardRepository.save(any(Card.class))).thenAnswer(inv -> inv.getArgument(0));
@@ -141,7 +193,7 @@ class CardServiceImplTest {
         existing.setCardNumber(encNumber);
         existing.setExpirationDate(LocalDate.now().plusYears(2));
         existing.setStatus(CardStatus.ACTIVE);
-        existing.setBalance(new BigDecimal("10.00"));
+        existing.setBalance(Money.parse("10.00"));
 
         when(cardRepository.findById(11L)).thenReturn(Optional.of(existing));
 
@@ -168,7 +220,7 @@ class CardServiceImplTest {
         from.setCardNumber(cardCrypto.encrypt("4111111111111111"));
         from.setExpirationDate(LocalDate.now().plusYears(2));
         from.setStatus(CardStatus.ACTIVE);
-        from.setBalance(new BigDecimal("100.00"));
+        from.setBalance(Money.parse("100.00"));
 
         Card to = new Card();
         to.setId(102L);
@@ -176,26 +228,67 @@ class CardServiceImplTest {
         to.setCardNumber(cardCrypto.encrypt("5555555555554444"));
         to.setExpirationDate(LocalDate.now().plusYears(2));
         to.setStatus(CardStatus.ACTIVE);
-        to.setBalance(new BigDecimal("50.00"));
+        to.setBalance(Money.parse("50.00"));
 
-        when(cardRepository.findById(101L)).thenReturn(Optional.of(from));
-        when(cardRepository.findById(102L)).thenReturn(Optional.of(to));
+        when(cardRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdForUpdate(102L)).thenReturn(Optional.of(to));
 
         cardService.transfer(1L, new TransferDto(101L,
                 102L,
                 new BigDecimal("60.00")));
 
-        assertEquals(new BigDecimal("40.00"), from.getBalance());
-        assertEquals(new BigDecimal("110.00"), to.getBalance());
+        assertEquals(Money.parse("40.00"), from.getBalance());
+        assertEquals(Money.parse("110.00"), to.getBalance());
 
-        verify(cardRepository).findById(101L);
-        verify(cardRepository).findById(102L);
+        ArgumentCaptor<List<CardTransaction>> journal = ArgumentCaptor.forClass(List.class);
+        verify(cardTransactionRepository).saveAll(journal.capture());
+        assertEquals(2, journal.getValue().size());
+        assertEquals(CardTransactionType.DEBIT, journal.getValue().get(0).getType());
+        assertEquals(101L, journal.getValue().get(0).getCardId());
+        assertEquals(CardTransactionType.CREDIT, journal.getValue().get(1).getType());
+        assertEquals(102L, journal.getValue().get(1).getCardId());
+
+        verify(cardRepository).findByIdForUpdate(101L);
+        verify(cardRepository).findByIdForUpdate(102L);
         verify(cardRepository).save(from);
         verify(cardRepository).save(to);
         verifyNoMoreInteractions(cardRepository);
         verifyNoInteractions(userRepository);
     }
 
+    @Test
+    void transfer_locksCardsInAscendingIdOrder() {
+        User owner = new User();
+        owner.setId(1L);
+        owner.setUsername("alice");
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+
+        Card low = new Card();
+        low.setId(101L);
+        low.setOwner(owner);
+        low.setStatus(CardStatus.ACTIVE);
+        low.setBalance(Money.parse("10.00"));
+
+        Card high = new Card();
+        high.setId(102L);
+        high.setOwner(owner);
+        high.setStatus(CardStatus.ACTIVE);
+        high.setBalance(Money.parse("50.00"));
+
+        when(cardRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(low));
+        when(cardRepository.findByIdForUpdate(102L)).thenReturn(Optional.of(high));
+
+        cardService.transfer(1L, new TransferDto(102L, 101L, new BigDecimal("20.00")));
+
+        assertEquals(Money.parse("30.00"), low.getBalance());
+        assertEquals(Money.parse("30.00"), high.getBalance());
+
+        InOrder order = inOrder(cardRepository);
+        order.verify(cardRepository).findByIdForUpdate(101L);
+        order.verify(cardRepository).findByIdForUpdate(102L);
+    }
+
     @Test
     void transfer_forbidden_ifAnyCardNotOwned() {
         User owner = new User();
@@ -216,7 +309,7 @@ class CardServiceImplTest {
         from.setCardNumber(cardCrypto.encrypt("4111111111111111"));
         from.setExpirationDate(LocalDate.now().plusYears(2));
         from.setStatus(CardStatus.ACTIVE);
-        from.setBalance(new BigDecimal("100.00"));
+        from.setBalance(Money.parse("100.00"));
 
         Card to = new Card();
         to.setId(102L);
@@ -224,10 +317,10 @@ class CardServiceImplTest {
         to.setCardNumber(cardCrypto.encrypt("5555555555554444"));
         to.setExpirationDate(LocalDate.now().plusYears(2));
         to.setStatus(CardStatus.ACTIVE);
-        to.setBalance(new BigDecimal("50.00"));
+        to.setBalance(Money.parse("50.00"));
 
-        when(cardRepository.findById(101L)).thenReturn(Optional.of(from));
-        when(cardRepository.findById(102L)).thenReturn(Optional.of(to));
+        when(cardRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdForUpdate(102L)).thenReturn(Optional.of(to));
 
         assertThatThrownBy(() -> cardService.transfer(1L,
                 new TransferDto(101L,
@@ -236,8 +329,8 @@ class CardServiceImplTest {
                 .isInstanceOf(ForbiddenOperationException.class)
                 .hasMessageContaining("Перевод только между своими картами");
 
-        verify(cardRepository).findById(101L);
-        verify(cardRepository).findById(102L);
+        verify(cardRepository).findByIdForUpdate(101L);
+        verify(cardRepository).findByIdForUpdate(102L);
         verifyNoMoreInteractions(cardRepository);
         verifyNoInteractions(userRepository);
     }
@@ -256,7 +349,7 @@ class CardServiceImplTest {
         from.setCardNumber(cardCrypto.encrypt("4111111111111111"));
         from.setExpirationDate(LocalDate.now().plusYears(2));
         from.setStatus(CardStatus.ACTIVE);
-        from.setBalance(new BigDecimal("10.00"));
+        from.setBalance(Money.parse("10.00"));
 
         Card to = new Card();
         to.setId(102L);
@@ -264,10 +357,10 @@ class CardServiceImplTest {
         to.setCardNumber(cardCrypto.encrypt("5555555555554444"));
         to.setExpirationDate(LocalDate.now().plusYears(2));
         to.setStatus(CardStatus.ACTIVE);
-        to.setBalance(new BigDecimal("50.00"));
+        to.setBalance(Money.parse("50.00"));
 
-        when(cardRepository.findById(101L)).thenReturn(Optional.of(from));
-        when(cardRepository.findById(102L)).thenReturn(Optional.of(to));
+        when(cardRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdForUpdate(102L)).thenReturn(Optional.of(to));
 
         assertThatThrownBy(() -> cardService.transfer(1L,
                 new TransferDto(101L,
@@ -276,12 +369,318 @@ class CardServiceImplTest {
                 .isInstanceOf(InsufficientFundsException.class)
                 .hasMessageContaining("Недостаточно средств");
 
-        verify(cardRepository).findById(101L);
-        verify(cardRepository).findById(102L);
+        verify(cardRepository).findByIdForUpdate(101L);
+        verify(cardRepository).findByIdForUpdate(102L);
         verifyNoMoreInteractions(cardRepository);
         verifyNoInteractions(userRepository);
     }
 
+    @Test
+    void transfer_conditional_updatesWithoutLoadingCards() {
+        var conditional = new CardServiceImpl(cardRepository, userRepository, cardCrypto, blindIndex, cardTransactionRepository, bucketRepository, TransferMode.CONDITIONAL, false, events, userCardsCache);
+        var amount = new BigDecimal("60.00");
+        when(cardRepository.debit(101L, 1L, Money.of(amount))).thenReturn(1);
+        when(cardRepository.credit(102L, 1L, Money.of(amount), TransferValidator.MAX_BALANCE)).thenReturn(1);
+
+        conditional.transfer(1L, new TransferDto(101L, 102L, amount));
+
+        InOrder order = inOrder(cardRepository);
+        order.verify(cardRepository).debit(101L, 1L, Money.of(amount));
+        order.verify(cardRepository).credit(102L, 1L, Money.of(amount), TransferValidator.MAX_BALANCE);
+        verifyNoMoreInteractions(cardRepository);
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void transfer_conditional_insufficientFundsFromRowCount() {
+        var conditional = new CardServiceImpl(cardRepository, userRepository, cardCrypto, blindIndex, cardTransactionRepository, bucketRepository, TransferMode.CONDITIONAL, false, events, userCardsCache);
+        User owner = new User();
+        owner.setId(1L);
+
+        Card from = new Card();
+        from.setId(101L);
+        from.setOwner(owner);
+        from.setStatus(CardStatus.ACTIVE);
+        from.setBalance(Money.parse("10.00"));
+
+        Card to = new Card();
+        to.setId(102L);
+        to.setOwner(owner);
+        to.setStatus(CardStatus.ACTIVE);
+        to.setBalance(Money.parse("50.00"));
+
+        var amount = new BigDecimal("60.00");
+        when(cardRepository.debit(101L, 1L, Money.of(amount))).thenReturn(0);
+        when(cardRepository.findById(101L)).thenReturn(Optional.of(from));
+        when(cardRepository.findById(102L)).thenReturn(Optional.of(to));
+
+        assertThatThrownBy(() -> conditional.transfer(1L, new TransferDto(101L, 102L, amount)))
+                .isInstanceOf(InsufficientFundsException.class)
+                .hasMessageContaining("Недостаточно средств");
+
+        verify(cardRepository, never()).credit(any(), any(), any(), any());
+    }
+
+    @Test
+    void transfer_conditional_blockedTargetRejected() {
+        var conditional = new CardServiceImpl(cardRepository, userRepository, cardCrypto, blindIndex, cardTransactionRepository, bucketRepository, TransferMode.CONDITIONAL, false, events, userCardsCache);
+        User owner = new User();
+        owner.setId(1L);
+
+        Card from = new Card();
+        from.setId(101L);
+        from.setOwner(owner);
+        from.setStatus(CardStatus.ACTIVE);
+        from.setBalance(Money.parse("100.00"));
+
+        Card to = new Card();
+        to.setId(102L);
+        to.setOwner(owner);
+        to.setStatus(CardStatus.BLOCKED);
+        to.setBalance(Money.parse("50.00"));
+
+        var amount = new BigDecimal("60.00");
+        when(cardRepository.debit(101L, 1L, Money.of(amount))).thenReturn(1);
+        when(cardRepository.credit(102L, 1L, Money.of(amount), TransferValidator.MAX_BALANCE)).thenReturn(0);
+        when(cardRepository.findById(101L)).thenReturn(Optional.of(from));
+        when(cardRepository.findById(102L)).thenReturn(Optional.of(to));
+
+        assertThatThrownBy(() -> conditional.transfer(1L, new TransferDto(101L, 102L, amount)))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessageContaining("Обе карты должны быть активированы");
+    }
+
+    @Test
+    void transfer_optimistic_readsWithoutLocks() {
+        var optimistic = new CardServiceImpl(cardRepository, userRepository, cardCrypto, blindIndex, cardTransactionRepository, bucketRepository, TransferMode.OPTIMISTIC, false, events, userCardsCache);
+        User owner = new User();
+        owner.setId(1L);
+
+        Card from = new Card();
+        from.setId(101L);
+        from.setOwner(owner);
+        from.setStatus(CardStatus.ACTIVE);
+        from.setBalance(Money.parse("100.00"));
+
+        Card to = new Card();
+        to.setId(102L);
+        to.setOwner(owner);
+        to.setStatus(CardStatus.ACTIVE);
+        to.setBalance(Money.parse("0.00"));
+
+        when(cardRepository.findById(101L)).thenReturn(Optional.of(from));
+        when(cardRepository.findById(102L)).thenReturn(Optional.of(to));
+
+        optimistic.transfer(1L, new TransferDto(101L, 102L, new BigDecimal("25.00")));
+
+        assertEquals(Money.parse("75.00"), from.getBalance());
+        assertEquals(Money.parse("25.00"), to.getBalance());
+        verify(cardRepository, never()).findByIdForUpdate(any());
+    }
+
+    @Test
+    void transfer_toStripedCard_creditsBucketUnderSharedLock() {
+        var striping = new CardServiceImpl(cardRepository, userRepository, cardCrypto, blindIndex, cardTransactionRepository, bucketRepository, TransferMode.PESSIMISTIC, true, events, userCardsCache);
+        User owner = new User();
+        owner.setId(1L);
+
+        Card from = new Card();
+        from.setId(101L);
+        from.setOwner(owner);
+        from.setStatus(CardStatus.ACTIVE);
+        from.setBalance(Money.parse("100.00"));
+
+        Card hot = new Card();
+        hot.setId(102L);
+        hot.setOwner(owner);
+        hot.setStatus(CardStatus.ACTIVE);
+        hot.setBalance(Money.parse("0.00"));
+        hot.setBalanceBuckets(4);
+
+        when(cardRepository.findStripedIds(List.of(101L, 102L))).thenReturn(List.of(102L));
+        when(cardRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdForShare(102L)).thenReturn(Optional.of(hot));
+        when(bucketRepository.sumByCardId(102L)).thenReturn(BigDecimal.ZERO);
+        when(bucketRepository.credit(eq(102L), anyInt(), any())).thenReturn(1);
+
+        striping.transfer(1L, new TransferDto(101L, 102L, new BigDecimal("25.00")));
+
+        assertEquals(Money.parse("75.00"), from.getBalance());
+        assertEquals(Money.parse("0.00"), hot.getBalance());
+        verify(bucketRepository).credit(eq(102L), intThat(b -> b >= 0 && b < 4), eq(new BigDecimal("25.00")));
+        verify(cardRepository, never()).findByIdForUpdate(102L);
+    }
+
+    @Test
+    void transfer_fromStripedCard_foldsBucketsWhenMainBalanceShort() {
+        User owner = new User();
+        owner.setId(1L);
+
+        Card hot = new Card();
+        hot.setId(101L);
+        hot.setOwner(owner);
+        hot.setStatus(CardStatus.ACTIVE);
+        hot.setBalance(Money.parse("10.00"));
+        hot.setBalanceBuckets(4);
+
+        Card to = new Card();
+        to.setId(102L);
+        to.setOwner(owner);
+        to.setStatus(CardStatus.ACTIVE);
+        to.setBalance(Money.parse("0.00"));
+
+        when(cardRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(hot));
+        when(cardRepository.findByIdForUpdate(102L)).thenReturn(Optional.of(to));
+        when(bucketRepository.sumByCardId(101L)).thenReturn(new BigDecimal("90.00"));
+
+        cardService.transfer(1L, new TransferDto(101L, 102L, new BigDecimal("60.00")));
+
+        assertEquals(Money.parse("40.00"), hot.getBalance());
+        assertEquals(Money.parse("60.00"), to.getBalance());
+        verify(bucketRepository).reset(101L);
+    }
+
+    @Test
+    void setBalanceBuckets_foldsOldBucketsAndCreatesNew() {
+        var striping = new CardServiceImpl(cardRepository, userRepository, cardCrypto, blindIndex, cardTransactionRepository, bucketRepository, TransferMode.PESSIMISTIC, true, events, userCardsCache);
+        User owner = new User();
+        owner.setId(1L);
+        Card card = new Card();
+        card.setId(101L);
+        card.setOwner(owner);
+        card.setCardNumber(cardCrypto.encrypt("4111111111111111"));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse("10.00"));
+        card.setBalanceBuckets(2);
+
+        when(cardRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(card));
+        when(bucketRepository.sumByCardId(101L)).thenReturn(new BigDecimal("5.00"));
+
+        CardDto dto = striping.setBalanceBuckets(101L, 8);
+
+        assertEquals(Money.parse("15.00"), dto.balance());
+        assertEquals(8, card.getBalanceBuckets());
+        InOrder order = inOrder(bucketRepository);
+        order.verify(bucketRepository).deleteByCardId(101L);
+        order.verify(bucketRepository).create(101L, 8);
+
+        assertThatThrownBy(() -> striping.setBalanceBuckets(101L, 65))
+                .isInstanceOf(InvalidCardDataException.class);
+    }
+
+    @Test
+    void setBalanceBuckets_withoutStriping_onlyMergesBack() {
+        User owner = new User();
+        owner.setId(1L);
+        Card card = new Card();
+        card.setId(101L);
+        card.setOwner(owner);
+        card.setCardNumber(cardCrypto.encrypt("4111111111111111"));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse("10.00"));
+        card.setBalanceBuckets(2);
+        when(cardRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(card));
+        when(bucketRepository.sumByCardId(101L)).thenReturn(new BigDecimal("5.00"));
+
+        assertThatThrownBy(() -> cardService.setBalanceBuckets(101L, 4))
+                .isInstanceOf(InvalidCardDataException.class);
+        verify(bucketRepository, never()).create(anyLong(), anyInt());
+
+        CardDto dto = cardService.setBalanceBuckets(101L, 0);
+
+        assertEquals(Money.parse("15.00"), dto.balance());
+        assertEquals(0, card.getBalanceBuckets());
+        verify(bucketRepository).deleteByCardId(101L);
+    }
+
+    @Test
+    void transfer_toCardAtMaxBalance_rejectedInEveryMode() {
+        var optimistic = new CardServiceImpl(cardRepository, userRepository, cardCrypto, blindIndex, cardTransactionRepository, bucketRepository, TransferMode.OPTIMISTIC, false, events, userCardsCache);
+        var conditional = new CardServiceImpl(cardRepository, userRepository, cardCrypto, blindIndex, cardTransactionRepository, bucketRepository, TransferMode.CONDITIONAL, false, events, userCardsCache);
+        User owner = new User();
+        owner.setId(1L);
+
+        Card from = new Card();
+        from.setId(101L);
+        from.setOwner(owner);
+        from.setStatus(CardStatus.ACTIVE);
+        from.setBalance(Money.parse("100.00"));
+
+        Card full = new Card();
+        full.setId(102L);
+        full.setOwner(owner);
+        full.setStatus(CardStatus.ACTIVE);
+        full.setBalance(Money.parse("9999999999999.99"));
+
+        var amount = new BigDecimal("1.00");
+        when(cardRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdForUpdate(102L)).thenReturn(Optional.of(full));
+        when(cardRepository.findById(101L)).thenReturn(Optional.of(from));
+        when(cardRepository.findById(102L)).thenReturn(Optional.of(full));
+        when(cardRepository.debit(101L, 1L, Money.of(amount))).thenReturn(1);
+        when(cardRepository.credit(102L, 1L, Money.of(amount), TransferValidator.MAX_BALANCE)).thenReturn(0);
+
+        for (var service : List.of(cardService, optimistic, conditional)) {
+            assertThatThrownBy(() -> service.transfer(1L, new TransferDto(101L, 102L, amount)))
+                    .isInstanceOf(InvalidTransferException.class)
+                    .hasMessageContaining("Баланс карты-получателя не может превышать");
+        }
+        assertEquals(Money.parse("100.00"), from.getBalance());
+        assertEquals(Money.parse("9999999999999.99"), full.getBalance());
+        verify(cardRepository, never()).save(any());
+        verify(cardTransactionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void transfer_toStripedCardOverMaxBalance_rejectedBeforeDebit() {
+        var striping = new CardServiceImpl(cardRepository, userRepository, cardCrypto, blindIndex, cardTransactionRepository, bucketRepository, TransferMode.PESSIMISTIC, true, events, userCardsCache);
+        User owner = new User();
+        owner.setId(1L);
+
+        Card from = new Card();
+        from.setId(101L);
+        from.setOwner(owner);
+        from.setStatus(CardStatus.ACTIVE);
+        from.setBalance(Money.parse("100.00"));
+
+        Card hot = new Card();
+        hot.setId(102L);
+        hot.setOwner(owner);
+        hot.setStatus(CardStatus.ACTIVE);
+        hot.setBalance(Money.parse("9999999999000.00"));
+        hot.setBalanceBuckets(4);
+
+        when(cardRepository.findStripedIds(List.of(101L, 102L))).thenReturn(List.of(102L));
+        when(cardRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(from));
+        when(cardRepository.findByIdForShare(102L)).thenReturn(Optional.of(hot));
+        when(bucketRepository.sumByCardId(102L)).thenReturn(new BigDecimal("999.99"));
+
+        assertThatThrownBy(() -> striping.transfer(1L, new TransferDto(101L, 102L, new BigDecimal("0.01"))))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessageContaining("Баланс карты-получателя не может превышать");
+        assertEquals(Money.parse("100.00"), from.getBalance());
+        verify(bucketRepository, never()).credit(any(), anyInt(), any());
+    }
+
+    @Test
+    void setBalanceBuckets_foldOverMaxBalance_rejected() {
+        User owner = new User();
+        owner.setId(1L);
+        Card card = new Card();
+        card.setId(101L);
+        card.setOwner(owner);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse("9999999999999.00"));
+        card.setBalanceBuckets(2);
+        when(cardRepository.findByIdForUpdate(101L)).thenReturn(Optional.of(card));
+        when(bucketRepository.sumByCardId(101L)).thenReturn(new BigDecimal("1.00"));
+
+        assertThatThrownBy(() -> cardService.setBalanceBuckets(101L, 0))
+                .isInstanceOf(InvalidCardDataException.class);
+        assertEquals(Money.parse("9999999999999.00"), card.getBalance());
+        verify(bucketRepository, never()).deleteByCardId(anyLong());
+    }
+
     @Test
     void transfer_sameCardIds() {
         assertThatThrownBy(() -> cardService.transfer(1L,
@@ -294,24 +693,305 @@ class CardServiceImplTest {
         verifyNoInteractions(cardRepository, userRepository);
     }
 
+    @Test
+    void transfer_amountOutOfRange_rejected() {
+        for (var amount : List.of(new BigDecimal("10000000000000.00"), new BigDecimal("1e30"))) {
+            assertThatThrownBy(() -> cardService.transfer(1L, new TransferDto(101L, 102L, amount)))
+                    .isInstanceOf(InvalidTransferException.class)
+                    .hasMessageContaining("Сумма не может превышать");
+        }
+        assertThatThrownBy(() -> cardService.transferBatch(1L, List.of(
+                new TransferDto(101L, 102L, new BigDecimal("5.00")),
+                new TransferDto(102L, 101L, new BigDecimal("1e30")))))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessageContaining("перевод №2");
+
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void transferBatch_netsBalancesPerCard() {
+        User owner = new User();
+        owner.setId(1L);
+
+        Card a = new Card();
+        a.setId(101L);
+        a.setOwner(owner);
+        a.setStatus(CardStatus.ACTIVE);
+        a.setBalance(Money.parse("100.00"));
+
+        Card b = new Card();
+        b.setId(102L);
+        b.setOwner(owner);
+        b.setStatus(CardStatus.ACTIVE);
+        b.setBalance(Money.parse("0.00"));
+
+        Card c = new Card();
+        c.setId(103L);
+        c.setOwner(owner);
+        c.setStatus(CardStatus.ACTIVE);
+        c.setBalance(Money.parse("5.00"));
+
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(a, b, c));
+
+        // b получает деньги раньше, чем отдаёт их, а c в итоге не меняется
+        var result = cardService.transferBatch(1L, List.of(
+                new TransferDto(101L, 102L, new BigDecimal("70.00")),
+                new TransferDto(102L, 103L, new BigDecimal("50.00")),
+                new TransferDto(103L, 101L, new BigDecimal("50.00"))));
+
+        assertEquals(3, result.transfers());
+        assertEquals(2, result.updatedCards());
+        assertEquals(Money.parse("80.00"), a.getBalance());
+        assertEquals(Money.parse("20.00"), b.getBalance());
+        assertEquals(Money.parse("5.00"), c.getBalance());
+
+        verify(cardRepository).findAllByIdForUpdate(new TreeSet<>(List.of(101L, 102L, 103L)));
+        verifyNoMoreInteractions(cardRepository);
+    }
+
+    @Test
+    void transferBatch_insufficientFundsMidBatch_changesNothing() {
+        User owner = new User();
+        owner.setId(1L);
+
+        Card a = new Card();
+        a.setId(101L);
+        a.setOwner(owner);
+        a.setStatus(CardStatus.ACTIVE);
+        a.setBalance(Money.parse("10.00"));
+
+        Card b = new Card();
+        b.setId(102L);
+        b.setOwner(owner);
+        b.setStatus(CardStatus.ACTIVE);
+        b.setBalance(Money.parse("0.00"));
+
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(a, b));
+
+        // по сальдо хватает, но второй перевод идёт раньше пополнения
+        assertThatThrownBy(() -> cardService.transferBatch(1L, List.of(
+                new TransferDto(101L, 102L, new BigDecimal("5.00")),
+                new TransferDto(102L, 101L, new BigDecimal("8.00")),
+                new TransferDto(101L, 102L, new BigDecimal("5.00")))))
+                .isInstanceOf(InsufficientFundsException.class)
+                .hasMessageContaining("перевод №2");
+
+        assertEquals(Money.parse("10.00"), a.getBalance());
+        assertEquals(Money.parse("0.00"), b.getBalance());
+    }
+
+    @Test
+    void transferBatch_creditOverMaxBalance_rejectedWithItemIndex() {
+        User owner = new User();
+        owner.setId(1L);
+
+        Card a = new Card();
+        a.setId(101L);
+        a.setOwner(owner);
+        a.setStatus(CardStatus.ACTIVE);
+        a.setBalance(Money.parse("100.00"));
+
+        Card b = new Card();
+        b.setId(102L);
+        b.setOwner(owner);
+        b.setStatus(CardStatus.ACTIVE);
+        b.setBalance(Money.parse("9999999999990.00"));
+
+        when(cardRepository.findAllByIdForUpdate(any())).thenReturn(List.of(a, b));
+
+        // по отдельности оба зачисления укладываются, вместе - нет
+        assertThatThrownBy(() -> cardService.transferBatch(1L, List.of(
+                new TransferDto(101L, 102L, new BigDecimal("5.00")),
+                new TransferDto(101L, 102L, new BigDecimal("5.00")))))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessageContaining("Баланс карты-получателя не может превышать")
+                .hasMessageContaining("перевод №2");
+
+        assertEquals(Money.parse("100.00"), a.getBalance());
+        assertEquals(Money.parse("9999999999990.00"), b.getBalance());
+        verify(cardTransactionRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void transferBatch_missingFields_rejectedWithItemIndex() {
+        assertThatThrownBy(() -> cardService.transferBatch(1L, Arrays.asList(
+                new TransferDto(101L, 102L, new BigDecimal("5.00")),
+                null)))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessageContaining("перевод №2");
+        assertThatThrownBy(() -> cardService.transferBatch(1L, List.of(
+                new TransferDto(null, 102L, new BigDecimal("5.00")))))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessageContaining("перевод №1");
+
+        verifyNoInteractions(cardRepository);
+    }
+
+    @Test
+    void transferGroup_rejectsOnlyFailingTransfers() {
+        User owner = new User();
+        owner.setId(1L);
+
+        Card a = new Card();
+        a.setId(101L);
+        a.setOwner(owner);
+        a.setStatus(CardStatus.ACTIVE);
+        a.setBalance(Money.parse("50.00"));
+
+        Card b = new Card();
+        b.setId(102L);
+        b.setOwner(owner);
+        b.setStatus(CardStatus.ACTIVE);
+        b.setBalance(Money.parse("0.00"));
+
+        when(cardRepository.findAllByIdForUpdate(new TreeSet<>(List.of(101L, 102L)))).thenReturn(List.of(a, b));
+
+        var failures = cardService.transferGroup(List.of(
+                new GroupTransfer(1L, new TransferDto(101L, 102L, new BigDecimal("30.00"))),
+                new GroupTransfer(1L, new TransferDto(101L, 102L, new BigDecimal("30.00"))),
+                new GroupTransfer(2L, new TransferDto(102L, 101L, new BigDecimal("1.00"))),
+                new GroupTransfer(1L, new TransferDto(101L, 101L, new BigDecimal("1.00"))),
+                new GroupTransfer(1L, new TransferDto(102L, 101L, new BigDecimal("5.00")))));
+
+        assertNull(failures.get(0));
+        assertEquals(InsufficientFundsException.class, failures.get(1).getClass());
+        assertEquals(ForbiddenOperationException.class, failures.get(2).getClass());
+        assertEquals(InvalidTransferException.class, failures.get(3).getClass());
+        assertNull(failures.get(4));
+        assertEquals(Money.parse("25.00"), a.getBalance());
+        assertEquals(Money.parse("25.00"), b.getBalance());
+        verify(cardRepository, times(1)).findAllByIdForUpdate(any());
+    }
+
+    @Test
+    void getCardTransactions_returnsCursorToNextPage() {
+        var t0 = Instant.parse("2026-01-01T10:00:00.123456Z");
+        when(cardRepository.findOwnerIdById(101L)).thenReturn(Optional.of(1L));
+        when(cardTransactionRepository.findLatest(101L, Limit.of(3))).thenReturn(List.of(
+                new CardTransactionDto(9L, 101L, 102L, CardTransactionType.DEBIT, new BigDecimal("1.00"), t0),
+                new CardTransactionDto(8L, 101L, 102L, CardTransactionType.DEBIT, new BigDecimal("2.00"), t0),
+                new CardTransactionDto(7L, 101L, 102L, CardTransactionType.CREDIT, new BigDecimal("3.00"), t0)));
+
+        var first = cardService.getCardTransactions(1L, 101L, null, 2);
+
+        assertEquals(2, first.content().size());
+        assertNotNull(first.nextCursor());
+
+        when(cardTransactionRepository.findBefore(101L, t0, 8L, Limit.of(3))).thenReturn(List.of(
+                new CardTransactionDto(7L, 101L, 102L, CardTransactionType.CREDIT, new BigDecimal("3.00"), t0)));
+
+        var second = cardService.getCardTransactions(1L, 101L, first.nextCursor(), 2);
+
+        assertEquals(1, second.content().size());
+        assertNull(second.nextCursor());
+    }
+
+    @Test
+    void getCardTransactions_foreignCardForbidden() {
+        when(cardRepository.findOwnerIdById(101L)).thenReturn(Optional.of(2L));
+
+        assertThatThrownBy(() -> cardService.getCardTransactions(1L, 101L, null, 20))
+                .isInstanceOf(ForbiddenOperationException.class);
+        verifyNoInteractions(cardTransactionRepository);
+    }
+
+    @Test
+    void createCard_duplicateNumberRejected() {
+        User owner = new User();
+        owner.setId(1L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(owner));
+        when(cardRepository.existsByCardNumberHmac(blindIndex.of("4532015112830366"))).thenReturn(true);
+
+        assertThatThrownBy(() -> cardService.createCard(new CreateCardDto(1L, "4532015112830366",
+                LocalDate.now().plusYears(2), BigDecimal.ZERO)))
+                .isInstanceOf(CardAlreadyExistsException.class);
+        verify(cardRepository, never()).save(any());
+    }
+
+    @Test
+    void createCard_balanceOutOfRange_rejected() {
+        User owner = new User();
+        owner.setId(1L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(owner));
+
+        for (var balance : List.of(new BigDecimal("1.001"), new BigDecimal("10000000000000.00"),
+                new BigDecimal("1e30"))) {
+            assertThatThrownBy(() -> cardService.createCard(new CreateCardDto(1L, "4532015112830366",
+                    LocalDate.now().plusYears(2), balance)))
+                    .isInstanceOf(InvalidCardDataException.class);
+        }
+        verify(cardRepository, never()).save(any());
+    }
+
+    @Test
+    void createCard_concurrentDuplicateOnInsert_rejectedAsConflict() {
+        User owner = new User();
+        owner.setId(1L);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(owner));
+        when(cardRepository.save(any(Card.class))).thenThrow(new DataIntegrityViolationException("duplicate key",
+                new ConstraintViolationException("duplicate key", null, "ux_cards_card_number_hmac")));
+
+        assertThatThrownBy(() -> cardService.createCard(new CreateCardDto(1L, "4532015112830366",
+                LocalDate.now().plusYears(2), BigDecimal.ZERO)))
+                .isInstanceOf(CardAlreadyExistsException.class);
+        verify(events, never()).publishEvent(any());
+    }
+
+    @Test
+    void findByNumber_resolvesThroughBlindIndex() {
+        User owner = new User();
+        owner.setId(1L);
+        Card card = new Card();
+        card.setId(31L);
+        card.setOwner(owner);
+        card.setCardLast4("0366");
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse("7.00"));
+        when(cardRepository.findByCardNumberHmac(blindIndex.of("4532015112830366"))).thenReturn(Optional.of(card));
+
+        var found = cardService.findByNumber("4532 0151 1283 0366");
+
+        assertEquals(31L, found.id());
+        assertEquals("**** **** **** 0366", found.number());
+        assertThatThrownBy(() -> cardService.findByNumber("4111111111111111"))
+                .isInstanceOf(CardNotFoundException.class);
+    }
+
+    @Test
+    void getUserCards_masksFromStoredLast4WithoutDecrypting() {
+        // не шифротекст: расшифровка упала бы
+        var card = new CardView(30L, 1L, CardStatus.ACTIVE, Money.parse("5.00"),
+                "4444", null, "not-a-ciphertext");
+        var pageable = PageRequest.of(0, 10);
+        when(cardRepository.findViewsByOwnerId(1L, pageable)).thenReturn(new PageImpl<>(List.of(card), pageable, 1));
+
+        var page = cardService.getUserCards(1L, null, pageable);
+
+        assertEquals("**** **** **** 4444", page.getContent().get(0).number());
+        assertEquals(1L, page.getContent().get(0).ownerId());
+        verify(cardRepository, never()).findByOwnerId(any(), any());
+    }
+
     @Test
     void deleteCard_ok_and_notFound() {
-        when(cardRepository.existsById(10L)).thenReturn(true);
+        when(cardRepository.findOwnerIdById(10L)).thenReturn(Optional.of(7L));
 
         cardService.deleteCard(10L);
 
-        verify(cardRepository).existsById(10L);
+        verify(cardRepository).findOwnerIdById(10L);
         verify(cardRepository).deleteById(10L);
+        verify(events).publishEvent(new CardsChangedEvent(7L));
         verifyNoMoreInteractions(cardRepository);
 
         reset(cardRepository);
-        when(cardRepository.existsById(10L)).thenReturn(false);
+        when(cardRepository.findOwnerIdById(10L)).thenReturn(Optional.empty());
 
         assertThatThrownBy(() -> cardService.deleteCard(10L))
                 .isInstanceOf(CardNotFoundException.class)
                 .hasMessageContaining("Карта не найдена");
 
-        verify(cardRepository).existsById(10L);
+        verify(cardRepository).findOwnerIdById(10L);
         verifyNoMoreInteractions(cardRepository);
         verifyNoInteractions(userRepository);
     }
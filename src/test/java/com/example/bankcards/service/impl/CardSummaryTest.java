@@ -0,0 +1,90 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.dto.CardSummaryDto;
+import com.example.bankcards.dto.CreateCardDto;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.CardSummaryService;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardSummaryTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    CardSummaryService cardSummaryService;
+    @Autowired
+    CardService cardService;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void summary_isCachedAndRefreshedAfterCardChanges() {
+        var owner = new User();
+        owner.setUsername("summary-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        Long ownerId = userRepository.save(owner).getId();
+        var first = cardService.createCard(newCard(ownerId, "100.00"));
+        cardService.createCard(newCard(ownerId, "50.25"));
+
+        assertThat(cardSummaryService.getSummary(ownerId)).containsExactly(
+                new CardSummaryDto(CardStatus.ACTIVE, 2, Money.parse("150.25")));
+        double hits = hits();
+        cardSummaryService.getSummary(ownerId);
+        assertThat(hits()).isEqualTo(hits + 1);
+
+        cardService.blockCard(first.id());
+        assertThat(cardSummaryService.getSummary(ownerId)).containsExactly(
+                new CardSummaryDto(CardStatus.ACTIVE, 1, Money.parse("50.25")),
+                new CardSummaryDto(CardStatus.BLOCKED, 1, Money.parse("100.00")));
+
+        cardService.deleteCard(first.id());
+        assertThat(cardSummaryService.getSummary(ownerId)).containsExactly(
+                new CardSummaryDto(CardStatus.ACTIVE, 1, Money.parse("50.25")));
+    }
+
+    private double hits() {
+        return meterRegistry.get("cache.gets").tag("cache", "card.summary")
+                .tag("result", "hit").functionCounter().count();
+    }
+
+    private static CreateCardDto newCard(Long ownerId, String balance) {
+        return new CreateCardDto(ownerId, luhnNumber(), LocalDate.now().plusYears(2), new BigDecimal(balance));
+    }
+
+    private static String luhnNumber() {
+        var digits = new int[16];
+        digits[0] = 4;
+        for (int i = 1; i < 15; i++) {
+            digits[i] = ThreadLocalRandom.current().nextInt(10);
+        }
+        int sum = 0;
+        for (int i = 14, pos = 0; i >= 0; i--, pos++) {
+            int d = digits[i];
+            if (pos % 2 == 0) {
+                d *= 2;
+                if (d > 9) d -= 9;
+            }
+            sum += d;
+        }
+        digits[15] = (10 - sum % 10) % 10;
+        var sb = new StringBuilder();
+        for (int d : digits) sb.append(d);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.dto.CardTransactionDto;
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.CardTransactionType;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardTransactionHistoryTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    CardService cardService;
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+
+    @Test
+    void history_pagesThroughJournalWithCursor() {
+        var owner = new User();
+        owner.setUsername("history-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        Long ownerId = userRepository.save(owner).getId();
+        Long from = cardRepository.save(card(owner, "100.00")).getId();
+        Long to = cardRepository.save(card(owner, "0.00")).getId();
+
+        for (int i = 1; i <= 5; i++) {
+            cardService.transfer(ownerId, new TransferDto(from, to, new BigDecimal(i)));
+        }
+        cardService.transferBatch(ownerId, List.of(
+                new TransferDto(from, to, new BigDecimal("6")),
+                new TransferDto(to, from, new BigDecimal("7"))));
+
+        List<CardTransactionDto> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            var page = cardService.getCardTransactions(ownerId, from, cursor, 3);
+            seen.addAll(page.content());
+            cursor = page.nextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).hasSize(7);
+        assertThat(seen).extracting(CardTransactionDto::id).doesNotHaveDuplicates();
+        assertThat(seen).extracting(CardTransactionDto::createdAt).isSortedAccordingTo((a, b) -> b.compareTo(a));
+        assertThat(seen).filteredOn(t -> t.type() == CardTransactionType.CREDIT).hasSize(1);
+        assertThat(seen).extracting(CardTransactionDto::amount).map(BigDecimal::intValue)
+                .containsExactlyInAnyOrder(1, 2, 3, 4, 5, 6, 7);
+    }
+
+    private Card card(User owner, String balance) {
+        var card = new Card();
+        card.setOwner(owner);
+        card.setCardNumber(cardCrypto.encrypt("4111111111111111"));
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse(balance));
+        return card;
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.exception.InsufficientFundsException;
+import com.example.bankcards.exception.InvalidTransferException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.TransferService;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CardTransferConcurrencyTest extends AbstractPostgresIntegrationTest {
+
+    private static final int CARDS = 4;
+    private static final int TRANSFERS = Integer.getInteger("stress.transfers", 400);
+    private static final Money INITIAL_BALANCE = Money.parse("1000.00");
+    // cards.balance - NUMERIC(15,2)
+    private static final Money MAX_BALANCE = Money.parse("9999999999999.99");
+
+    @Autowired
+    TransferService transferService;
+    @Autowired
+    CardService cardService;
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+
+    @Value("${app.card.transfer.mode}")
+    String transferMode;
+    @Value("${app.card.transfer.striping.enabled}")
+    boolean striping;
+    @Value("${app.card.transfer.group-commit.enabled}")
+    boolean groupCommit;
+
+    private Long ownerId;
+    protected List<Long> cardIds;
+
+    @BeforeEach
+    void setUp() {
+        var owner = new User();
+        owner.setUsername("stress-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        ownerId = userRepository.save(owner).getId();
+
+        cardIds = new ArrayList<>();
+        for (int i = 0; i < CARDS; i++) {
+            var card = new Card();
+            card.setOwner(owner);
+            card.setCardNumber(cardCrypto.encrypt("4111111111111111"));
+            card.setExpirationDate(LocalDate.now().plusYears(2));
+            card.setStatus(CardStatus.ACTIVE);
+            card.setBalance(INITIAL_BALANCE);
+            cardIds.add(cardRepository.save(card).getId());
+        }
+    }
+
+    @ParameterizedTest(name = "{0} threads")
+    @ValueSource(ints = {1, 8, 64})
+    void concurrentTransfers_conserveMoney(int threads) throws Exception {
+        Queue<Throwable> unexpected = new ConcurrentLinkedQueue<>();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger aborted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < TRANSFERS; i++) {
+            pool.submit(() -> {
+                var random = ThreadLocalRandom.current();
+                int from = random.nextInt(CARDS);
+                int to = (from + 1 + random.nextInt(CARDS - 1)) % CARDS;
+                var amount = BigDecimal.valueOf(random.nextInt(1, 50_000), 2);
+                try {
+                    start.await();
+                    transferService.transfer(ownerId, null, new TransferDto(cardIds.get(from), cardIds.get(to), amount));
+                    done.incrementAndGet();
+                } catch (InsufficientFundsException e) {
+                    rejected.incrementAndGet();
+                } catch (OptimisticLockingFailureException e) {
+                    // оптимистичный режим: повторы исчерпаны, перевод откатился целиком
+                    aborted.incrementAndGet();
+                } catch (Throwable e) {
+                    unexpected.add(e);
+                }
+            });
+        }
+        long began = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(5, TimeUnit.MINUTES)).isTrue();
+        double seconds = (System.nanoTime() - began) / 1e9;
+
+        System.out.printf("transfer stress [%s]: threads=%d transfers=%d done=%d rejected=%d aborted=%d throughput=%.1f tx/s%n",
+                transferMode + (striping ? "+striping" : "") + (groupCommit ? "+group-commit" : ""), threads, TRANSFERS, done.get(), rejected.get(), aborted.get(), TRANSFERS / seconds);
+
+        assertThat(unexpected).isEmpty();
+        var balances = cardService.getUserCards(ownerId, null, PageRequest.of(0, CARDS))
+                .map(CardDto::balance).toList();
+        assertThat(balances).allSatisfy(b -> assertThat(b.isNegative()).isFalse());
+        assertThat(balances.stream().reduce(Money.ZERO, Money::plus))
+                .isEqualTo(Money.ofMinor(INITIAL_BALANCE.minorUnits() * CARDS));
+    }
+
+    @Test
+    void transferToCardAtMaxBalance_rejectedWithoutChanges() {
+        var full = cardRepository.findById(cardIds.get(1)).orElseThrow();
+        full.setBalance(MAX_BALANCE);
+        cardRepository.save(full);
+
+        assertThatThrownBy(() -> transferService.transfer(ownerId, null,
+                new TransferDto(cardIds.get(0), cardIds.get(1), new BigDecimal("1.00"))))
+                .isInstanceOf(InvalidTransferException.class)
+                .hasMessageContaining("Баланс карты-получателя не может превышать");
+
+        assertThat(cardRepository.findById(cardIds.get(0)).orElseThrow().getBalance()).isEqualTo(INITIAL_BALANCE);
+        assertThat(cardRepository.findById(cardIds.get(1)).orElseThrow().getBalance()).isEqualTo(MAX_BALANCE);
+    }
+}
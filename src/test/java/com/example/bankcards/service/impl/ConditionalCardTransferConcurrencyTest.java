@@ -0,0 +1,7 @@
+package com.example.bankcards.service.impl;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "app.card.transfer.mode=CONDITIONAL")
+class ConditionalCardTransferConcurrencyTest extends CardTransferConcurrencyTest {
+}
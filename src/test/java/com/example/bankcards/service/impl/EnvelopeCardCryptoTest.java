@@ -0,0 +1,55 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.dto.CreateCardDto;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardCrypto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// перешифрование выключено: общая БД тестов не должна переходить на конвертный формат
+@TestPropertySource(properties = {
+        "app.card.crypto.envelope.enabled=true",
+        "app.card.crypto.envelope.master-key-file=target/test-master.key",
+        "app.card.reencryption.enabled=false"
+})
+class EnvelopeCardCryptoTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    CardService cardService;
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+
+    @Test
+    void createCard_storesNumberUnderWrappedDataKey() {
+        var owner = new User();
+        owner.setUsername("envelope-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        Long ownerId = userRepository.save(owner).getId();
+
+        var created = cardService.createCard(new CreateCardDto(ownerId, "4000002760003184",
+                LocalDate.now().plusYears(2), BigDecimal.TEN));
+
+        byte[] stored = cardRepository.findById(created.id()).orElseThrow().getCardNumberEnc();
+        assertThat(cardCrypto.writesEnvelope()).isTrue();
+        assertThat(stored[0]).isEqualTo((byte) 3);
+        assertThat(cardCrypto.decrypt(stored)).isEqualTo("4000002760003184");
+        cardRepository.deleteById(created.id());
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.bankcards.service.impl;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Тот же прогон, что и {@link CardTransferConcurrencyTest}, через конвейер групповой
+ * фиксации: строки "transfer stress" обоих тестов сравнивают пропускную способность.
+ */
+@TestPropertySource(properties = "app.card.transfer.group-commit.enabled=true")
+class GroupCommitCardTransferConcurrencyTest extends CardTransferConcurrencyTest {
+}
@@ -0,0 +1,10 @@
+package com.example.bankcards.service.impl;
+
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = {
+        "app.card.transfer.mode=OPTIMISTIC",
+        "app.card.transfer.optimistic.max-attempts=20"
+})
+class OptimisticCardTransferConcurrencyTest extends CardTransferConcurrencyTest {
+}
@@ -0,0 +1,146 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.exception.InvalidTransferException;
+import com.example.bankcards.repository.CardBalanceBucketRepository;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.CardTransactionRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.service.TransferMode;
+import com.example.bankcards.util.CardBlindIndex;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ShardedTransferPipelineTest {
+
+    private final CardService cardService = mock(CardService.class);
+    private final TransferDto dto = new TransferDto(1L, 2L, new BigDecimal("1.00"));
+    private ShardedTransferPipeline pipeline;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.destroy();
+    }
+
+    @Test
+    void errorInGroup_failsWaitingCallers_andWriterKeepsRunning() {
+        pipeline = pipeline(Duration.ofSeconds(5));
+        when(cardService.transferGroup(anyList()))
+                .thenThrow(new AssertionError("сбой"))
+                .thenAnswer(inv -> new ArrayList<RuntimeException>(
+                        Collections.nCopies(inv.<List<?>>getArgument(0).size(), null)));
+
+        assertThatThrownBy(() -> pipeline.transfer(1L, dto))
+                .isInstanceOf(IllegalStateException.class)
+                .hasCauseInstanceOf(AssertionError.class);
+        pipeline.transfer(1L, dto);
+
+        verify(cardService, times(2)).transferGroup(anyList());
+    }
+
+    @Test
+    void stuckGroup_callersFailAfterTimeout() throws Exception {
+        pipeline = pipeline(Duration.ofMillis(200));
+        var entered = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        when(cardService.transferGroup(anyList())).thenAnswer(inv -> {
+            entered.countDown();
+            release.await();
+            return new ArrayList<RuntimeException>(Collections.nCopies(inv.<List<?>>getArgument(0).size(), null));
+        });
+
+        var first = CompletableFuture.runAsync(() -> pipeline.transfer(1L, dto));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        // писатель занят первой группой: второй перевод ждёт в очереди и снимается с неё
+        assertThatThrownBy(() -> pipeline.transfer(1L, dto))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("перевод отменён");
+        assertThatThrownBy(first::join)
+                .hasCauseInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("исход неизвестен");
+
+        release.countDown();
+        verify(cardService, times(1)).transferGroup(anyList());
+    }
+
+    @Test
+    void invalidItems_failOnlyTheirTransfers_restOfGroupCommits() {
+        var cardRepository = mock(CardRepository.class);
+        var service = new CardServiceImpl(cardRepository, mock(UserRepository.class), mock(CardCrypto.class),
+                mock(CardBlindIndex.class), mock(CardTransactionRepository.class), mock(CardBalanceBucketRepository.class),
+                TransferMode.PESSIMISTIC, false, mock(ApplicationEventPublisher.class), mock(UserCardsCache.class));
+        // окно группы с запасом, чтобы все четыре перевода попали в одну группу;
+        // балансов хватает при любом порядке их прихода
+        pipeline = new ShardedTransferPipeline(service, new SimpleMeterRegistry(),
+                true, 1, Duration.ofMillis(500), 4, Duration.ofSeconds(5));
+        var owner = new User();
+        owner.setId(1L);
+        var other = new User();
+        other.setId(2L);
+        var a = card(101L, owner, "100.00");
+        var b = card(102L, owner, "10.00");
+        var c = card(201L, other, "50.00");
+        var full = card(202L, other, "9999999999999.99");
+        when(cardRepository.findAllByIdForUpdate(anyCollection())).thenReturn(List.of(a, b, c, full));
+
+        var first = CompletableFuture.runAsync(() ->
+                pipeline.transfer(1L, new TransferDto(101L, 102L, new BigDecimal("30.00"))));
+        var oversized = CompletableFuture.runAsync(() ->
+                pipeline.transfer(1L, new TransferDto(101L, 102L, new BigDecimal("1e30"))));
+        // сумма допустима, но баланс получателя вышел бы за NUMERIC(15,2)
+        var overflowing = CompletableFuture.runAsync(() ->
+                pipeline.transfer(2L, new TransferDto(201L, 202L, new BigDecimal("1.00"))));
+        var last = CompletableFuture.runAsync(() ->
+                pipeline.transfer(1L, new TransferDto(102L, 101L, new BigDecimal("10.00"))));
+
+        assertThatThrownBy(oversized::join).hasCauseInstanceOf(InvalidTransferException.class);
+        assertThatThrownBy(overflowing::join).hasCauseInstanceOf(InvalidTransferException.class);
+        first.join();
+        last.join();
+        assertThat(a.getBalance()).isEqualTo(Money.parse("80.00"));
+        assertThat(b.getBalance()).isEqualTo(Money.parse("30.00"));
+        assertThat(c.getBalance()).isEqualTo(Money.parse("50.00"));
+        assertThat(full.getBalance()).isEqualTo(Money.parse("9999999999999.99"));
+        verify(cardRepository, times(1)).findAllByIdForUpdate(anyCollection());
+    }
+
+    private static Card card(Long id, User owner, String balance) {
+        var card = new Card();
+        card.setId(id);
+        card.setOwner(owner);
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse(balance));
+        return card;
+    }
+
+    private ShardedTransferPipeline pipeline(Duration timeout) {
+        return new ShardedTransferPipeline(cardService, new SimpleMeterRegistry(),
+                true, 1, Duration.ofMillis(1), 500, timeout);
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.bankcards.service.impl;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.test.context.TestPropertySource;
+
+@TestPropertySource(properties = "app.card.transfer.striping.enabled=true")
+class StripedCardTransferConcurrencyTest extends CardTransferConcurrencyTest {
+
+    @BeforeEach
+    void stripeCards() {
+        cardService.setBalanceBuckets(cardIds.get(0), 8);
+        cardService.setBalanceBuckets(cardIds.get(1), 4);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.exception.IdempotencyKeyReuseException;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.TransferService;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransferIdempotencyTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    TransferService transferService;
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private Long ownerId;
+    private Long fromId;
+    private Long toId;
+
+    @BeforeEach
+    void setUp() {
+        var owner = new User();
+        owner.setUsername("idem-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        ownerId = userRepository.save(owner).getId();
+        fromId = cardRepository.save(card(owner, "100.00")).getId();
+        toId = cardRepository.save(card(owner, "0.00")).getId();
+    }
+
+    @Test
+    void replayedKey_transfersOnce() {
+        String key = UUID.randomUUID().toString();
+        var dto = new TransferDto(fromId, toId, new BigDecimal("30.00"));
+
+        var first = transferService.transfer(ownerId, key, dto);
+        var second = transferService.transfer(ownerId, key, dto);
+
+        assertThat(first.status()).isEqualTo(200);
+        assertThat(first.replayed()).isFalse();
+        assertThat(second.status()).isEqualTo(200);
+        assertThat(second.replayed()).isTrue();
+        assertThat(balance(fromId)).isEqualByComparingTo("70.00");
+        assertThat(balance(toId)).isEqualByComparingTo("30.00");
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "transfer.idempotency")
+                .tag("result", "hit").functionCounter().count()).isPositive();
+    }
+
+    @Test
+    void failedTransfer_replaysStoredError() {
+        String key = UUID.randomUUID().toString();
+        var dto = new TransferDto(fromId, toId, new BigDecimal("500.00"));
+
+        var first = transferService.transfer(ownerId, key, dto);
+        cardRepository.findById(fromId).ifPresent(c -> {
+            c.setBalance(Money.parse("1000.00"));
+            cardRepository.save(c);
+        });
+        var second = transferService.transfer(ownerId, key, dto);
+
+        assertThat(first.status()).isEqualTo(409);
+        assertThat(first.body()).isEqualTo("Недостаточно средств");
+        assertThat(second.status()).isEqualTo(409);
+        assertThat(second.replayed()).isTrue();
+        assertThat(balance(toId)).isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    void sameKeyWithOtherPayload_rejected() {
+        String key = UUID.randomUUID().toString();
+        transferService.transfer(ownerId, key, new TransferDto(fromId, toId, new BigDecimal("10.00")));
+
+        assertThatThrownBy(() -> transferService.transfer(ownerId, key,
+                new TransferDto(fromId, toId, new BigDecimal("20.00"))))
+                .isInstanceOf(IdempotencyKeyReuseException.class);
+        assertThat(balance(fromId)).isEqualByComparingTo("90.00");
+    }
+
+    private Card card(User owner, String balance) {
+        var card = new Card();
+        card.setOwner(owner);
+        card.setCardNumber(cardCrypto.encrypt("4111111111111111"));
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse(balance));
+        return card;
+    }
+
+    private BigDecimal balance(Long cardId) {
+        return cardRepository.findById(cardId).orElseThrow().getBalance().toBigDecimal();
+    }
+}
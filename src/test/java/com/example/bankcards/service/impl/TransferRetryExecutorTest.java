@@ -0,0 +1,67 @@
+package com.example.bankcards.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransferRetryExecutorTest {
+
+    private SimpleMeterRegistry registry;
+    private TransferRetryExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        executor = new TransferRetryExecutor(registry, 3, Duration.ofMillis(1), Duration.ofMillis(2));
+    }
+
+    @Test
+    void retriesOptimisticFailureUntilSuccess() {
+        var calls = new AtomicInteger();
+
+        String result = executor.execute(() -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new ObjectOptimisticLockingFailureException("Card", 1L);
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(3, calls.get());
+        assertEquals(2.0, registry.get("transfer.optimistic.retries").counter().count());
+        assertEquals(0.0, registry.get("transfer.optimistic.aborts").counter().count());
+    }
+
+    @Test
+    void abortsAfterMaxAttempts() {
+        var calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> executor.execute(() -> {
+            calls.incrementAndGet();
+            throw new ObjectOptimisticLockingFailureException("Card", 1L);
+        })).isInstanceOf(ObjectOptimisticLockingFailureException.class);
+
+        assertEquals(3, calls.get());
+        assertEquals(2.0, registry.get("transfer.optimistic.retries").counter().count());
+        assertEquals(1.0, registry.get("transfer.optimistic.aborts").counter().count());
+    }
+
+    @Test
+    void otherExceptionsAreNotRetried() {
+        var calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> executor.execute(() -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("boom");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertEquals(1, calls.get());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.config.ReadYourWritesWindow;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserCardsCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void cachesPagesPerOwnerStatusAndPage() {
+        var cache = new UserCardsCache(registry, new ReadYourWritesWindow(false, Duration.ZERO, 1), true, 100, Duration.ofMinutes(1));
+
+        cache.get(1L, null, PageRequest.of(0, 20), this::load);
+        cache.get(1L, null, PageRequest.of(0, 20), this::load);
+        cache.get(1L, CardStatus.ACTIVE, PageRequest.of(0, 20), this::load);
+        cache.get(1L, null, PageRequest.of(1, 20), this::load);
+        cache.get(2L, null, PageRequest.of(0, 20), this::load);
+
+        assertThat(loads.get()).isEqualTo(4);
+        assertThat(registry.get("cache.gets").tag("cache", "card.user-cards")
+                .tag("result", "hit").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void evict_dropsOnlyThatOwner() {
+        var cache = new UserCardsCache(registry, new ReadYourWritesWindow(false, Duration.ZERO, 1), true, 100, Duration.ofMinutes(1));
+        cache.get(1L, null, PageRequest.of(0, 20), this::load);
+        cache.get(2L, null, PageRequest.of(0, 20), this::load);
+
+        // вне транзакции сброс сразу
+        cache.evictAfterCommit(1L);
+        cache.get(1L, null, PageRequest.of(0, 20), this::load);
+        cache.get(2L, null, PageRequest.of(0, 20), this::load);
+
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    void pageLoadedBeforeConcurrentCommit_isNotServedAfterIt() {
+        var cache = new UserCardsCache(registry, new ReadYourWritesWindow(false, Duration.ZERO, 1), true, 100, Duration.ofMinutes(1));
+        // запись коммитится, пока читатель ещё считает страницу по старому снимку
+        cache.get(1L, null, PageRequest.of(0, 20), () -> {
+            var stale = load();
+            cache.evictAfterCommit(1L);
+            return stale;
+        });
+
+        cache.get(1L, null, PageRequest.of(0, 20), this::load);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void disabled_alwaysLoads() {
+        var cache = new UserCardsCache(registry, new ReadYourWritesWindow(false, Duration.ZERO, 1), false, 100, Duration.ofMinutes(1));
+
+        cache.get(1L, null, PageRequest.of(0, 20), this::load);
+        cache.get(1L, null, PageRequest.of(0, 20), this::load);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void version_changesOnlyAfterOwnerEviction_evenWhenPagesAreNotCached() {
+        var cache = new UserCardsCache(registry, new ReadYourWritesWindow(false, Duration.ZERO, 1), false, 100, Duration.ofMinutes(1));
+        String first = cache.version(1L);
+        String other = cache.version(2L);
+
+        assertThat(cache.version(1L)).isEqualTo(first);
+        cache.evictAfterCommit(1L);
+
+        assertThat(cache.version(1L)).isNotEqualTo(first);
+        assertThat(cache.version(2L)).isEqualTo(other);
+        // после перезапуска версии не совпадают с выданными раньше
+        assertThat(new UserCardsCache(registry, new ReadYourWritesWindow(false, Duration.ZERO, 1), false, 100, Duration.ofMinutes(1)).version(1L)).isNotEqualTo(first);
+    }
+
+    private Page<CardDto> load() {
+        loads.incrementAndGet();
+        return new PageImpl<>(List.of(new CardDto(1L, 1L, "**** **** **** 1111", CardStatus.ACTIVE, Money.parse("1.00"))));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.dto.TransferDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserCardsCachingTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    CardService cardService;
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void cachedPage_isRefreshedOnceWriteReturns() {
+        var owner = new User();
+        owner.setUsername("cache-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        Long ownerId = userRepository.save(owner).getId();
+        Long from = cardRepository.save(card(owner, "100.00")).getId();
+        Long to = cardRepository.save(card(owner, "0.00")).getId();
+        var page = PageRequest.of(0, 10);
+
+        cardService.getUserCards(ownerId, null, page);
+        double hits = hits();
+        assertThat(cardService.getUserCards(ownerId, null, page).map(CardDto::balance))
+                .containsExactlyInAnyOrder(Money.parse("100.00"), Money.parse("0.00"));
+        assertThat(hits()).isEqualTo(hits + 1);
+        String version = cardService.getUserCardsVersion(ownerId);
+
+        cardService.transfer(ownerId, new TransferDto(from, to, new BigDecimal("40.00")));
+        assertThat(cardService.getUserCardsVersion(ownerId)).isNotEqualTo(version);
+        assertThat(cardService.getUserCards(ownerId, null, page).map(CardDto::balance))
+                .containsExactlyInAnyOrder(Money.parse("60.00"), Money.parse("40.00"));
+
+        version = cardService.getUserCardsVersion(ownerId);
+        cardService.blockCard(to);
+        assertThat(cardService.getUserCardsVersion(ownerId)).isNotEqualTo(version);
+        assertThat(cardService.getUserCards(ownerId, CardStatus.ACTIVE, page).map(CardDto::id))
+                .containsExactly(from);
+    }
+
+    private double hits() {
+        return meterRegistry.get("cache.gets").tag("cache", "card.user-cards")
+                .tag("result", "hit").functionCounter().count();
+    }
+
+    private Card card(User owner, String balance) {
+        var card = new Card();
+        card.setOwner(owner);
+        card.setCardNumber(cardCrypto.encrypt("4111111111111111"));
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(CardStatus.ACTIVE);
+        card.setBalance(Money.parse(balance));
+        return card;
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.dto.CardDto;
+import com.example.bankcards.entity.Card;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.CardStatus;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.CardRepository;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.CardService;
+import com.example.bankcards.util.CardCrypto;
+import com.example.bankcards.util.Money;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.bankcards.service.impl.UserCardsSliceTest$CapturingInspector")
+class UserCardsSliceTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    CardService cardService;
+    @Autowired
+    CardRepository cardRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    CardCrypto cardCrypto;
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Test
+    void slice_pagesOwnerCardsWithAndWithoutStatus() {
+        var owner = new User();
+        owner.setUsername("slice-" + UUID.randomUUID());
+        owner.setPassword("enc");
+        owner.setRole(Role.USER);
+        Long ownerId = userRepository.save(owner).getId();
+        List<Long> active = new ArrayList<>();
+        List<Long> all = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            var status = i % 2 == 0 ? CardStatus.ACTIVE : CardStatus.BLOCKED;
+            var id = cardRepository.save(card(owner, status)).getId();
+            all.add(id);
+            if (status == CardStatus.ACTIVE) {
+                active.add(id);
+            }
+        }
+
+        assertThat(collect(ownerId, null)).extracting(CardDto::id).containsExactlyElementsOf(all);
+        assertThat(collect(ownerId, CardStatus.ACTIVE)).extracting(CardDto::id).containsExactlyElementsOf(active);
+    }
+
+    @Test
+    void sliceQueries_useOwnerIndexes() {
+        var tx = new TransactionTemplate(transactionManager);
+        var plans = tx.execute(status -> {
+            // таблица размером с прод: 200 владельцев по 100 карт; всё откатывается вместе со статистикой
+            jdbcTemplate.update("""
+                    insert into users (username, password, role)
+                    select 'explain-' || g, 'enc', 'USER' from generate_series(1, 200) g""");
+            Long ownerId = jdbcTemplate.queryForObject(
+                    "select min(id) from users where username like 'explain-%'", Long.class);
+            jdbcTemplate.update("""
+                    insert into cards (card_number, owner_id, expiration_date, status, balance)
+                    select 'x', u.id, current_date, case when g % 4 = 0 then 'BLOCKED' else 'ACTIVE' end, 0
+                    from users u cross join generate_series(1, 100) g
+                    where u.username like 'explain-%'""");
+            jdbcTemplate.execute("analyze cards");
+            // EXPLAIN того SQL, который Hibernate строит для репозитория, с теми же параметрами
+            var withStatus = explain(captureSql(() -> cardRepository.findViewsByOwnerIdAndStatusAfter(
+                    ownerId, CardStatus.BLOCKED, 0, Limit.of(21))), ownerId, "BLOCKED", 0L, 21);
+            var withoutStatus = explain(captureSql(() -> cardRepository.findViewsByOwnerIdAfter(
+                    ownerId, 0, Limit.of(21))), ownerId, 0L, 21);
+            status.setRollbackOnly();
+            return List.of(withStatus, withoutStatus);
+        });
+
+        assertThat(plans.get(0)).containsPattern("Index (Only )?Scan using ix_cards_owner_status_id")
+                .doesNotContain("Sort");
+        assertThat(plans.get(1)).containsPattern("Index (Only )?Scan using ix_cards_owner_id")
+                .doesNotContain("Sort");
+    }
+
+    private String explain(String sql, Object... params) {
+        assertThat(sql.chars().filter(ch -> ch == '?').count()).isEqualTo(params.length);
+        return String.join("\n", jdbcTemplate.queryForList("explain " + sql, String.class, params));
+    }
+
+    private static String captureSql(Runnable query) {
+        CapturingInspector.STATEMENTS.clear();
+        query.run();
+        return CapturingInspector.STATEMENTS.stream()
+                .filter(sql -> sql.contains("from cards"))
+                .reduce((first, second) -> second)
+                .orElseThrow();
+    }
+
+    /**
+     * Запоминает SQL, который Hibernate отправляет в БД.
+     */
+    public static class CapturingInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    private List<CardDto> collect(Long ownerId, CardStatus status) {
+        List<CardDto> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            var page = cardService.getUserCardsSlice(ownerId, status, cursor, 2);
+            assertThat(page.content()).hasSizeLessThanOrEqualTo(2);
+            seen.addAll(page.content());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return seen;
+    }
+
+    private Card card(User owner, CardStatus status) {
+        var card = new Card();
+        card.setOwner(owner);
+        card.setCardNumber(cardCrypto.encrypt("4111111111111111"));
+        card.setExpirationDate(LocalDate.now().plusYears(2));
+        card.setStatus(status);
+        card.setBalance(Money.parse("10.00"));
+        return card;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bankcards.service.impl;
+
+import com.example.bankcards.AbstractPostgresIntegrationTest;
+import com.example.bankcards.dto.UserDto;
+import com.example.bankcards.entity.User;
+import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.repository.UserRepository;
+import com.example.bankcards.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserListingTest extends AbstractPostgresIntegrationTest {
+
+    @Autowired
+    UserService userService;
+    @Autowired
+    UserRepository userRepository;
+
+    @Test
+    void users_pageByIdWithOptionalRoleFilter() {
+        List<Long> admins = new ArrayList<>();
+        List<Long> all = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            var role = i % 3 == 0 ? Role.ADMIN : Role.USER;
+            var id = userRepository.save(user(role)).getId();
+            all.add(id);
+            if (role == Role.ADMIN) {
+                admins.add(id);
+            }
+        }
+        // общая БД: начинаем сразу перед своими пользователями
+        String start = new IdCursor(all.get(0) - 1).encode();
+
+        var everyone = collect(start, null);
+        assertThat(everyone).extracting(UserDto::id).containsAll(all).isSorted().doesNotHaveDuplicates();
+
+        var onlyAdmins = collect(start, Role.ADMIN);
+        assertThat(onlyAdmins).extracting(UserDto::role).containsOnly(Role.ADMIN);
+        assertThat(onlyAdmins).extracting(UserDto::id).containsAll(admins).doesNotContainAnyElementsOf(
+                all.stream().filter(id -> !admins.contains(id)).toList());
+    }
+
+    private List<UserDto> collect(String cursor, Role role) {
+        List<UserDto> seen = new ArrayList<>();
+        do {
+            var page = userService.getUsers(cursor, 2, role);
+            assertThat(page.content()).hasSizeLessThanOrEqualTo(2);
+            seen.addAll(page.content());
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return seen;
+    }
+
+    private static User user(Role role) {
+        var user = new User();
+        user.setUsername("listing-" + UUID.randomUUID());
+        user.setPassword("enc");
+        user.setRole(role);
+        return user;
+    }
+}
@@ -4,6 +4,7 @@ import com.example.bankcards.dto.CreateUserDto;
 import com.example.bankcards.dto.UserDto;
 import com.example.bankcards.entity.User;
 import com.example.bankcards.entity.enums.Role;
+import com.example.bankcards.exception.InvalidCursorException;
 import com.example.bankcards.exception.InvalidUserDataException;
 import com.example.bankcards.exception.UserNotFoundException;
 import com.example.bankcards.exception.UsernameAlreadyExistsException;
@@ -12,6 +13,7 @@ import com.example.bankcards.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
+import org.springframework.data.domain.Limit;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.List;
@@ -37,24 +39,34 @@ class UserServiceImplTest {
     }
 
     @Test
-    void getAllUsers() {
-        var user1 = new User();
-        user1.setId(1L);
-        user1.setUsername("username1");
-        user1.setPassword("password1");
-        var user2 = new User();
-        user2.setId(2L);
-        user2.setUsername("username2");
-        user2.setPassword("password2");
-        when(userRepository.findAll()).thenReturn(List.of(user1, user2));
-        List<UserDto> users = userService.getAllUsers();
-        assertThat(users.size()).isEqualTo(2);
-        assertThat(users.get(0).username()).isEqualTo("username1");
-        assertThat(users.get(1).username()).isEqualTo("username2");
-        verify(userRepository).findAll();
+    void getUsers() {
+        when(userRepository.findPageAfter(0L, Limit.of(3))).thenReturn(List.of(
+                new UserDto(1L, "username1", Role.USER),
+                new UserDto(2L, "username2", Role.ADMIN),
+                new UserDto(3L, "username3", Role.USER)));
+        var page = userService.getUsers(null, 2, null);
+        assertThat(page.content()).extracting(UserDto::username).containsExactly("username1", "username2");
+        assertThat(page.nextCursor()).isNotNull();
+
+        when(userRepository.findPageAfter(2L, Limit.of(3))).thenReturn(List.of(
+                new UserDto(3L, "username3", Role.USER)));
+        var last = userService.getUsers(page.nextCursor(), 2, null);
+        assertThat(last.content()).extracting(UserDto::id).containsExactly(3L);
+        assertThat(last.nextCursor()).isNull();
+        verify(userRepository).findPageAfter(0L, Limit.of(3));
+        verify(userRepository).findPageAfter(2L, Limit.of(3));
         verifyNoMoreInteractions(userRepository);
     }
 
+    @Test
+    void getUsers_clampsPageSizeAndRejectsBadCursor() {
+        when(userRepository.findPageByRoleAfter(Role.ADMIN, 0L, Limit.of(1001))).thenReturn(List.of());
+        assertThat(userService.getUsers("", 1_000_000, Role.ADMIN).content()).isEmpty();
+        verify(userRepository).findPageByRoleAfter(Role.ADMIN, 0L, Limit.of(1001));
+        assertThatThrownBy(() -> userService.getUsers("не-курсор", 10, null))
+                .isInstanceOf(InvalidCursorException.class);
+    }
+
     @Test
     void getUserById() {
         var user = new User();
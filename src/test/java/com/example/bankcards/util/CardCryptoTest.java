@@ -0,0 +1,155 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class CardCryptoTest {
+
+    private static final String KEY = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=";
+
+    private final CardCrypto crypto = new CardCrypto(KEY);
+
+    @Test
+    void roundTrip_usesFreshIvEachTime() {
+        String first = crypto.encrypt("4111111111111111");
+        String second = crypto.encrypt("4111111111111111");
+
+        assertNotEquals(first, second);
+        assertEquals("4111111111111111", crypto.decrypt(first));
+        assertEquals("4111111111111111", crypto.decrypt(second));
+    }
+
+    @Test
+    void encrypt_keepsStoredFormat() {
+        String stored = crypto.encrypt("5500000000000004");
+        String[] parts = stored.split(":");
+
+        assertEquals(2, parts.length);
+        assertEquals(12, Base64.getDecoder().decode(parts[0]).length);
+        assertEquals(16 + 16, Base64.getDecoder().decode(parts[1]).length);
+    }
+
+    @Test
+    void decrypt_readsValuesWrittenByJdkBase64() throws Exception {
+        var iv = new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+        var cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        // длины, дающие все три варианта добивки '='
+        for (String plain : new String[]{"4111111111111111", "41111111111111111", "411111111111111111"}) {
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(Base64.getDecoder().decode(KEY), "AES"),
+                    new GCMParameterSpec(128, iv.clone()));
+            iv[0]++;
+            byte[] ct = cipher.doFinal(plain.getBytes(StandardCharsets.UTF_8));
+            String stored = Base64.getEncoder().encodeToString(cipher.getIV()) + ":"
+                    + Base64.getEncoder().encodeToString(ct);
+
+            assertEquals(plain, crypto.decrypt(stored));
+        }
+    }
+
+    @Test
+    void binaryFormat_roundTripsAndIsSmallerThanText() {
+        byte[] binary = crypto.encryptToBytes("4111111111111111");
+
+        assertEquals(2, binary[0]);
+        assertEquals(0, CardCrypto.keyIdOf(binary));
+        assertEquals("4111111111111111", crypto.decrypt(binary));
+        assertThat(binary.length).isLessThan(crypto.encrypt("4111111111111111").length());
+        assertEquals("4111111111111111", crypto.decrypt(binary, "ignored"));
+    }
+
+    @Test
+    void toBinary_repacksTextValueWithoutReencrypting() {
+        String text = crypto.encrypt("5555555555554444");
+
+        byte[] binary = CardCrypto.toBinary(text);
+
+        assertEquals("5555555555554444", crypto.decrypt(binary));
+        assertEquals("5555555555554444", crypto.decrypt(null, text));
+        assertThatThrownBy(() -> CardCrypto.toBinary("4111111111111111")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void keyring_encryptsWithActiveKeyAndReadsOlderKeys() {
+        var rotated = new CardCrypto(KEY, "7:ZmVkY2JhOTg3NjU0MzIxMGZlZGNiYTk4NzY1NDMyMTA=", 7);
+        byte[] old = crypto.encryptToBytes("4111111111111111");
+        byte[] fresh = rotated.encryptToBytes("4111111111111111");
+
+        assertEquals(7, CardCrypto.keyIdOf(fresh));
+        assertEquals("4111111111111111", rotated.decrypt(old));
+        assertEquals("4111111111111111", rotated.decrypt(null, crypto.encrypt("4111111111111111")));
+        assertThatThrownBy(() -> crypto.decrypt(fresh)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new CardCrypto(KEY, "", 3)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void keyring_withoutKeyZero_readsOnlyRemainingKeys() {
+        var rotated = new CardCrypto(KEY, "7:ZmVkY2JhOTg3NjU0MzIxMGZlZGNiYTk4NzY1NDMyMTA=", 7);
+        var retired = new CardCrypto("", "7:ZmVkY2JhOTg3NjU0MzIxMGZlZGNiYTk4NzY1NDMyMTA=", 7);
+        byte[] fresh = rotated.encryptToBytes("4111111111111111");
+
+        assertEquals("4111111111111111", retired.decrypt(fresh));
+        assertThatThrownBy(() -> retired.decrypt(null, crypto.encrypt("4111111111111111")))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> retired.decrypt(crypto.encryptToBytes("4111111111111111")))
+                .isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> new CardCrypto("", "7:ZmVkY2JhOTg3NjU0MzIxMGZlZGNiYTk4NzY1NDMyMTA=", 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        // ключ 0 можно задать и в самой связке, но не дважды
+        assertEquals("4111111111111111", new CardCrypto("", "0:" + KEY, 0).decrypt(crypto.encryptToBytes("4111111111111111")));
+        assertThatThrownBy(() -> new CardCrypto(KEY, "0:" + KEY, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void decryptBinary_rejectsUnknownVersion() {
+        byte[] binary = crypto.encryptToBytes("4111111111111111");
+        binary[0] = 3;
+
+        assertThatThrownBy(() -> crypto.decrypt(binary)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void decrypt_rejectsMalformedValue() {
+        assertThatThrownBy(() -> crypto.decrypt("no-separator")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> crypto.decrypt("AAAA:!!!!")).isInstanceOf(IllegalStateException.class);
+        String stored = crypto.encrypt("4111111111111111");
+        String tampered = stored.substring(0, stored.length() - 3) + (stored.charAt(stored.length() - 3) == 'A' ? "B==" : "A==");
+        assertThatThrownBy(() -> crypto.decrypt(tampered)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void concurrentCalls_doNotShareCipherState() throws Exception {
+        var pool = Executors.newFixedThreadPool(8);
+        try {
+            var tasks = new ArrayList<Callable<Boolean>>();
+            for (int t = 0; t < 8; t++) {
+                String number = "411111111111" + (1000 + t);
+                tasks.add(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        if (!number.equals(crypto.decrypt(crypto.encrypt(number)))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                });
+            }
+            for (var result : pool.invokeAll(tasks)) {
+                assertThat(result.get()).isTrue();
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
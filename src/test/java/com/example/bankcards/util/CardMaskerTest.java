@@ -0,0 +1,46 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.CharBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CardMaskerTest {
+
+    @Test
+    void masksLastFourDigits() {
+        assertThat(CardMasker.mask("4111 1111 1111 1234")).isEqualTo("**** **** **** 1234");
+        assertThat(CardMasker.mask("12-3")).isEqualTo("****");
+        assertThat(CardMasker.mask(null)).isNull();
+        assertThat(CardMasker.last4("55554444x")).isEqualTo("4444");
+        assertThat(CardMasker.last4("123")).isNull();
+        assertThat(CardMasker.maskLast4("0366")).isEqualTo("**** **** **** 0366");
+    }
+
+    @Test
+    void matchesRegexImplementation_onRandomInput() {
+        var random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            String input = i % 2 == 0 ? LuhnTest.noise(random) : LuhnTest.validNumber(random);
+            assertThat(CardMasker.mask(input)).as(input).isEqualTo(legacyMask(input));
+            assertThat(CardMasker.mask(CharBuffer.wrap(input.toCharArray()))).as(input).isEqualTo(legacyMask(input));
+        }
+    }
+
+    /**
+     * Прежняя реализация - эталон для сравнения.
+     */
+    static String legacyMask(String cardNumber) {
+        if (cardNumber == null) {
+            return null;
+        }
+        String design = cardNumber.replaceAll("\\D", "");
+        if (design.length() < 4) {
+            return "****";
+        }
+        String last4 = design.substring(design.length() - 4);
+        return "**** **** **** " + last4;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.bankcards.util;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DataKeyCacheTest {
+
+    private static final String KEY = "MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY=";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void envelope_roundTripsAndUnwrapsEachDataKeyOnce() {
+        var provider = new LocalFileKeyProvider(dir.resolve("master.key"));
+        var writer = new CardCrypto(KEY, "", 0,
+                new DataKeyCache(provider, new SimpleMeterRegistry(), Duration.ofHours(1), 100, Duration.ofHours(1)));
+        byte[] first = writer.encryptToBytes("4111111111111111");
+        byte[] second = writer.encryptToBytes("5555555555554444");
+
+        assertEquals(3, first[0]);
+        assertThat(Arrays.copyOfRange(first, 2, 2 + first[1])).isEqualTo(Arrays.copyOfRange(second, 2, 2 + second[1]));
+        assertEquals("4111111111111111", writer.decrypt(first));
+
+        // другой экземпляр с тем же мастер-ключом: ключ данных разворачивается один раз
+        var registry = new SimpleMeterRegistry();
+        var reader = new CardCrypto(KEY, "", 0,
+                new DataKeyCache(new LocalFileKeyProvider(dir.resolve("master.key")), registry,
+                        Duration.ofHours(1), 100, Duration.ofHours(1)));
+        assertEquals("4111111111111111", reader.decrypt(first));
+        assertEquals("5555555555554444", reader.decrypt(second));
+        assertEquals("4111111111111111", reader.decrypt(null, new CardCrypto(KEY).encrypt("4111111111111111")));
+
+        assertThat(registry.get("card.data-key.unwrap").timer().count()).isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", "card.data-keys").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", "card.data-keys").tag("result", "miss")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void dataKeyRotates_afterConfiguredPeriod() {
+        var cache = new DataKeyCache(new LocalFileKeyProvider(dir.resolve("master.key")), new SimpleMeterRegistry(),
+                Duration.ZERO, 100, Duration.ofHours(1));
+
+        assertThat(cache.current().wrapped()).isNotEqualTo(cache.current().wrapped());
+    }
+
+    @Test
+    void localFileProvider_createsKeyFileAndRejectsForeignWrappedKeys() throws Exception {
+        var file = dir.resolve("nested/master.key");
+        var provider = new LocalFileKeyProvider(file);
+        byte[] wrapped = provider.wrap(new byte[32]);
+
+        assertThat(Files.exists(file)).isTrue();
+        assertThat(new LocalFileKeyProvider(file).unwrap(wrapped)).isEqualTo(new byte[32]);
+        assertThatThrownBy(() -> new LocalFileKeyProvider(dir.resolve("other.key")).unwrap(wrapped))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void envelopeValue_withoutProvider_notDecrypted() {
+        var writer = new CardCrypto(KEY, "", 0,
+                new DataKeyCache(new LocalFileKeyProvider(dir.resolve("master.key")), new SimpleMeterRegistry(),
+                        Duration.ofHours(1), 100, Duration.ofHours(1)));
+        byte[] stored = writer.encryptToBytes("4111111111111111");
+
+        assertThatThrownBy(() -> new CardCrypto(KEY).decrypt(stored)).isInstanceOf(IllegalStateException.class);
+    }
+}
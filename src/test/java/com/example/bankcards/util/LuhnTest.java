@@ -0,0 +1,80 @@
+package com.example.bankcards.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.CharBuffer;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LuhnTest {
+
+    private static final String ALPHABET = "0123456789 -x٣";
+
+    @Test
+    void knownNumbers() {
+        assertThat(Luhn.isValid("4111111111111111")).isTrue();
+        assertThat(Luhn.isValid("4532 0151 1283 0366")).isTrue();
+        assertThat(Luhn.isValid("4111111111111112")).isFalse();
+        assertThat(Luhn.isValid("0000 0000 000")).isFalse();
+        assertThat(Luhn.isValid(null)).isFalse();
+    }
+
+    @Test
+    void matchesRegexImplementation_onRandomInput() {
+        var random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            String input = i % 2 == 0 ? noise(random) : validNumber(random);
+            assertThat(Luhn.isValid(input)).as(input).isEqualTo(legacyIsValid(input));
+            assertThat(Luhn.isValid(CharBuffer.wrap(input.toCharArray()))).as(input).isEqualTo(legacyIsValid(input));
+        }
+    }
+
+    static String noise(Random random) {
+        var sb = new StringBuilder();
+        int length = random.nextInt(26);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Номер с верной контрольной цифрой, местами с разделителями и лишними символами.
+     */
+    static String validNumber(Random random) {
+        int length = 12 + random.nextInt(8);
+        var digits = new int[length];
+        int sum = 0;
+        for (int i = length - 2; i >= 0; i--) {
+            digits[i] = random.nextInt(10);
+            int n = digits[i];
+            if ((length - 2 - i) % 2 == 0) { n *= 2; if (n > 9) n -= 9; }
+            sum += n;
+        }
+        digits[length - 1] = (10 - sum % 10) % 10;
+        var sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            if (i > 0 && random.nextInt(5) == 0) {
+                sb.append(ALPHABET.charAt(10 + random.nextInt(ALPHABET.length() - 10)));
+            }
+            sb.append(digits[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Прежняя реализация - эталон для сравнения.
+     */
+    static boolean legacyIsValid(String number) {
+        if (number == null) return false;
+        String s = number.replaceAll("\\D", "");
+        int sum = 0; boolean alt = false;
+        for (int i = s.length() - 1; i >= 0; i--) {
+            int n = s.charAt(i) - '0';
+            if (alt) { n *= 2; if (n > 9) n -= 9; }
+            sum += n; alt = !alt;
+        }
+        return s.length() >= 12 && s.length() <= 19 && sum % 10 == 0;
+    }
+}
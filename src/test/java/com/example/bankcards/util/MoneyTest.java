@@ -0,0 +1,41 @@
+package com.example.bankcards.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MoneyTest {
+
+    @Test
+    void of_keepsMinorUnitsAndIgnoresTrailingZeros() {
+        assertEquals(12345, Money.parse("123.45").minorUnits());
+        assertEquals(Money.parse("10"), Money.parse("10.000"));
+        assertEquals(new BigDecimal("10.00"), Money.parse("10").toBigDecimal());
+    }
+
+    @Test
+    void of_rejectsFractionsOfMinorUnit() {
+        assertThatThrownBy(() -> Money.parse("0.001")).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void arithmetic_isOverflowChecked() {
+        assertEquals(Money.parse("0.30"), Money.parse("0.10").plus(Money.parse("0.20")));
+        assertTrue(Money.parse("1.00").minus(Money.parse("1.01")).isNegative());
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)))
+                .isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void json_isSameNumberAsBigDecimal() throws Exception {
+        var om = new ObjectMapper();
+
+        assertEquals("100.50", om.writeValueAsString(Money.parse("100.5")));
+        assertEquals(Money.parse("100.50"), om.readValue("100.5", Money.class));
+    }
+}